@@ -0,0 +1,48 @@
+package com.thoughtworks.rslist.benchmark;
+
+import com.thoughtworks.rslist.dto.RankDto;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+final class Fixtures {
+  static final int PAID_RANKS = 10;
+
+  private Fixtures() {
+  }
+
+  static List<RsEventDto> rsEvents(int count) {
+    Random random = new Random(42);
+    UserDto user = UserDto.builder().id(1).userName("user").build();
+    List<RsEventDto> rsEvents = new ArrayList<>(count);
+    for (int id = 1; id <= count; id++) {
+      rsEvents.add(RsEventDto.builder().id(id).eventName("event" + id).keyword("keyword" + id % 50)
+          .voteNum(random.nextInt(10_000)).user(user).build());
+    }
+    return rsEvents;
+  }
+
+  // Paid ranks 1, 3, 5, ... held by the first events.
+  static List<RankDto> rankDtos() {
+    List<RankDto> rankDtos = new ArrayList<>(PAID_RANKS);
+    for (int i = 0; i < PAID_RANKS; i++) {
+      rankDtos.add(new RankDto(i + 1, i * 2 + 1, 100, i + 1));
+    }
+    return rankDtos;
+  }
+
+  /** Repository stand-in that only answers findAll(). */
+  static <T> T findAllOnly(Class<T> repositoryType, Object findAllResult) {
+    return repositoryType.cast(Proxy.newProxyInstance(repositoryType.getClassLoader(),
+        new Class<?>[] {repositoryType}, (proxy, method, args) -> {
+          if ("findAll".equals(method.getName()) && method.getParameterCount() == 0) {
+            return findAllResult;
+          }
+          throw new UnsupportedOperationException(method.getName());
+        }));
+  }
+}
@@ -0,0 +1,67 @@
+package com.thoughtworks.rslist.benchmark;
+
+import com.thoughtworks.rslist.component.RsEventLeaderboard;
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.repository.RankDtoRepository;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/** Rank merge behind /rs/list: paid slots plus vote-ordered events. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LeaderboardBenchmark {
+  @Param({"1000", "10000", "100000", "1000000"})
+  int events;
+
+  RsEventLeaderboard rsEventLeaderboard;
+
+  @Setup
+  public void setUp() {
+    rsEventLeaderboard = new RsEventLeaderboard(
+        Fixtures.findAllOnly(RsEventRepository.class, Fixtures.rsEvents(events)),
+        Fixtures.findAllOnly(RankDtoRepository.class, Fixtures.rankDtos()));
+    rsEventLeaderboard.size();
+  }
+
+  @Benchmark
+  public List<RsEvent> firstPage() {
+    return rsEventLeaderboard.getBetween(1, 10);
+  }
+
+  @Benchmark
+  public List<RsEvent> lastPage() {
+    return rsEventLeaderboard.getBetween(events - 9, events);
+  }
+
+  @Benchmark
+  public List<RsEvent> fullList() {
+    return rsEventLeaderboard.getAll();
+  }
+
+  @Benchmark
+  public List<RsEvent> searchKeyword() {
+    return rsEventLeaderboard.search("keyword7", 10);
+  }
+
+  @Benchmark
+  public List<RsEvent> searchPrefix() {
+    return rsEventLeaderboard.search("event1", 10);
+  }
+
+  @Benchmark
+  public void vote() {
+    rsEventLeaderboard.addVotes(ThreadLocalRandom.current().nextInt(1, events + 1), 1);
+  }
+}
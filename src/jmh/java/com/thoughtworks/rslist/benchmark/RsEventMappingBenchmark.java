@@ -0,0 +1,60 @@
+package com.thoughtworks.rslist.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/** RsEventDto -> RsEvent mapping as done by the controllers, and the JSON body it turns into. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RsEventMappingBenchmark {
+  @Param({"10", "1000", "100000"})
+  int events;
+
+  List<RsEventDto> rsEventDtos;
+  List<RsEvent> rsEvents;
+  ObjectMapper objectMapper;
+
+  @Setup
+  public void setUp() {
+    rsEventDtos = Fixtures.rsEvents(events);
+    rsEvents = map();
+    objectMapper = new ObjectMapper();
+  }
+
+  @Benchmark
+  public List<RsEvent> map() {
+    return rsEventDtos.stream()
+        .map(item -> RsEvent.builder()
+            .eventName(item.getEventName())
+            .keyword(item.getKeyword())
+            .userId(item.getId())
+            .voteNum(item.getVoteNum())
+            .build())
+        .collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public byte[] serialize() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(rsEvents);
+  }
+
+  @Benchmark
+  public byte[] mapAndSerialize() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(map());
+  }
+}
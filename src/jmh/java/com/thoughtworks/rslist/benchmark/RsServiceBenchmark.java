@@ -0,0 +1,104 @@
+package com.thoughtworks.rslist.benchmark;
+
+import com.thoughtworks.rslist.RsListApplication;
+import com.thoughtworks.rslist.domain.Trade;
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.service.RsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/** RsService.vote and RsService.buy end to end against an embedded H2 database. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RsServiceBenchmark {
+  private static final int EVENTS = 1000;
+
+  ConfigurableApplicationContext context;
+  RsService rsService;
+  int userId;
+  int firstEventId;
+
+  // Each thread buys only the ranks congruent to its index modulo the thread count. Its prices rise,
+  // so every bid on one of its ranks beats the last one, which a shared counter could not promise
+  // once threads overtake each other.
+  @State(Scope.Thread)
+  public static class Buyer {
+    int thread;
+    int threads;
+    int price;
+
+    @Setup
+    public void setUp(ThreadParams threadParams) {
+      thread = threadParams.getThreadIndex();
+      threads = threadParams.getThreadCount();
+      if (threads > EVENTS) {
+        throw new IllegalStateException("buy needs at most " + EVENTS + " threads, one rank each");
+      }
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    context = new SpringApplicationBuilder(RsListApplication.class)
+        .web(WebApplicationType.NONE)
+        .run("--spring.datasource.url=jdbc:h2:mem:benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1",
+            "--spring.datasource.username=sa",
+            "--spring.datasource.password=",
+            "--spring.jpa.hibernate.ddl-auto=create");
+    rsService = context.getBean(RsService.class);
+    UserRepository userRepository = context.getBean(UserRepository.class);
+    RsEventRepository rsEventRepository = context.getBean(RsEventRepository.class);
+    UserDto user = userRepository.save(UserDto.builder().userName("user").gender("female").age(19)
+        .email("a@b.com").phone("18888888888").voteNum(Integer.MAX_VALUE).build());
+    userId = user.getId();
+    for (int i = 0; i < EVENTS; i++) {
+      RsEventDto rsEventDto = rsEventRepository.save(
+          RsEventDto.builder().eventName("event" + i).keyword("keyword").voteNum(0).user(user).build());
+      if (i == 0) {
+        firstEventId = rsEventDto.getId();
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public void vote() {
+    rsService.vote(Vote.builder().userId(userId).voteNum(1).time(LocalDateTime.now()).build(), randomEventId());
+  }
+
+  // Every invocation outbids the holder of one of the thread's ranks among the first EVENTS with a
+  // higher price. Each rank is always bought for the same event, so no event gets deleted along the way.
+  @Benchmark
+  public void buy(Buyer buyer) {
+    int trade = ++buyer.price;
+    int rank = buyer.thread + trade % (EVENTS / buyer.threads) * buyer.threads + 1;
+    rsService.buy(new Trade(trade, rank), firstEventId + rank - 1);
+  }
+
+  private int randomEventId() {
+    return firstEventId + ThreadLocalRandom.current().nextInt(EVENTS);
+  }
+}
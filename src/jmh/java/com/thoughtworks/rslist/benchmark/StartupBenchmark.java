@@ -0,0 +1,81 @@
+package com.thoughtworks.rslist.benchmark;
+
+import com.thoughtworks.rslist.RsListApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first request: from launching a fresh JVM with the application until GET /rs/list is
+ * answered, against an embedded H2 database. default builds the schema with ddl-auto and creates
+ * every bean up front; prod runs the Flyway migrations and initializes lazily.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StartupBenchmark {
+  private static final long TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+  @Param({"default", "prod"})
+  String profile;
+
+  @Benchmark
+  public int timeToFirstRequest() throws IOException, InterruptedException {
+    int port = freePort();
+    List<String> command = new ArrayList<>();
+    command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(RsListApplication.class.getName());
+    command.add("--spring.profiles.active=" + profile);
+    command.add("--server.port=" + port);
+    command.add("--spring.datasource.url=jdbc:h2:mem:startup;MODE=MySQL;DB_CLOSE_DELAY=-1");
+    command.add("--spring.datasource.username=sa");
+    command.add("--spring.datasource.password=");
+    File log = File.createTempFile("startup-" + profile, ".log");
+    Process application = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+    try {
+      return awaitFirstResponse(new URL("http://localhost:" + port + "/rs/list"));
+    } finally {
+      application.destroy();
+      application.waitFor(10, TimeUnit.SECONDS);
+      log.delete();
+    }
+  }
+
+  private int awaitFirstResponse(URL url) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (System.currentTimeMillis() < deadline) {
+      try {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+          return connection.getResponseCode();
+        } finally {
+          connection.disconnect();
+        }
+      } catch (IOException notListeningYet) {
+        Thread.sleep(5);
+      }
+    }
+    throw new IllegalStateException("application did not answer within " + TIMEOUT_MILLIS + " ms");
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.thoughtworks.rslist.benchmark;
+
+import com.thoughtworks.rslist.RsListApplication;
+import com.thoughtworks.rslist.domain.User;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Users registered per second against an embedded H2 database: one save per user, the way
+ * POST /user does it, versus UserService.registerAll behind POST /users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UserRegistrationBenchmark {
+  private static final int USERS = 5000;
+
+  ConfigurableApplicationContext context;
+  UserRepository userRepository;
+  UserService userService;
+  List<User> users;
+
+  @Setup
+  public void setUp() {
+    context = new SpringApplicationBuilder(RsListApplication.class)
+        .web(WebApplicationType.NONE)
+        .run("--spring.datasource.url=jdbc:h2:mem:registration;MODE=MySQL;DB_CLOSE_DELAY=-1",
+            "--spring.datasource.username=sa",
+            "--spring.datasource.password=",
+            "--spring.jpa.hibernate.ddl-auto=create",
+            "--spring.jpa.properties.hibernate.generate_statistics=false");
+    userRepository = context.getBean(UserRepository.class);
+    userService = context.getBean(UserService.class);
+    users = new ArrayList<>(USERS);
+    for (int i = 0; i < USERS; i++) {
+      users.add(new User("user" + i % 1000, "female", 19, "a@b.com", "18888888888"));
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(USERS)
+  public void saveOneByOne() {
+    for (User user : users) {
+      userRepository.save(UserDto.builder().userName(user.getUserName()).gender(user.getGender())
+          .age(user.getAge()).email(user.getEmail()).phone(user.getPhone()).voteNum(user.getVoteNum()).build());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(USERS)
+  public int registerAll() {
+    return userService.registerAll(users);
+  }
+}
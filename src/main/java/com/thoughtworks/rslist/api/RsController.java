@@ -1,18 +1,27 @@
 package com.thoughtworks.rslist.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.rslist.component.IdempotencyCache;
+import com.thoughtworks.rslist.component.RateLimiter;
+import com.thoughtworks.rslist.component.RsEventLeaderboard;
+import com.thoughtworks.rslist.component.RsListResponseCache;
+import com.thoughtworks.rslist.component.WriteExecutor;
 import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.domain.RsEventPage;
 import com.thoughtworks.rslist.domain.Trade;
 import com.thoughtworks.rslist.domain.Vote;
-import com.thoughtworks.rslist.dto.RankDto;
+import com.thoughtworks.rslist.domain.VoteResult;
 import com.thoughtworks.rslist.dto.RsEventDto;
 import com.thoughtworks.rslist.dto.UserDto;
 import com.thoughtworks.rslist.exception.Error;
 import com.thoughtworks.rslist.exception.RequestNotValidException;
-import com.thoughtworks.rslist.repository.RankDtoRepository;
 import com.thoughtworks.rslist.repository.RsEventRepository;
 import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.service.BulkVoteService;
 import com.thoughtworks.rslist.service.RsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -20,86 +29,109 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @Validated
 public class RsController {
   @Autowired RsEventRepository rsEventRepository;
   @Autowired UserRepository userRepository;
-  @Autowired RankDtoRepository rankDtoRepository;
   @Autowired RsService rsService;
+  @Autowired BulkVoteService bulkVoteService;
+  @Autowired RsEventLeaderboard rsEventLeaderboard;
+  @Autowired RsListResponseCache rsListResponseCache;
+  @Autowired ObjectMapper objectMapper;
+  @Autowired WriteExecutor writeExecutor;
+  @Autowired RateLimiter rateLimiter;
+  @Autowired IdempotencyCache idempotencyCache;
+
+  private static final MediaType APPLICATION_NDJSON = MediaType.valueOf("application/x-ndjson");
+  private static final int MAX_SEARCH_LIMIT = 100;
+  private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
+  @Value("${rs.list.source:memory}")
+  String rsListSource;
 
   @GetMapping("/rs/list")
-  public ResponseEntity<List<RsEvent>> getRsEventListBetween(
-      @RequestParam(required = false) Integer start, @RequestParam(required = false) Integer end) {
-    /*List<RsEvent> rsEvents =
-        rsEventRepository.findAll().stream()
-            .map(
-                item ->
-                    RsEvent.builder()
-                        .eventName(item.getEventName())
-                        .keyword(item.getKeyword())
-                        .userId(item.getId())
-                        .voteNum(item.getVoteNum())
-                        .build())
-            .collect(Collectors.toList());
-    if (start == null || end == null) {
-      return ResponseEntity.ok(rsEvents);
+  public ResponseEntity<?> getRsEventListBetween(
+      @RequestParam(required = false) Integer start, @RequestParam(required = false) Integer end,
+      @RequestParam(required = false) String cursor) {
+    if (start != null && end != null && (cursor != null || "database".equals(rsListSource))) {
+      RsEventPage rsEventPage = rsService.getRsEventPage(start, end, cursor);
+      ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+      if (rsEventPage.getNextCursor() != null) {
+        response.header("X-Next-Cursor", rsEventPage.getNextCursor());
+      }
+      return response.body(rsEventPage.getRsEvents());
     }
-    return ResponseEntity.ok(rsEvents.subList(start - 1, end));*/
-    List<RsEvent> rsEvents =
-            rsEventRepository.findAll().stream()
-                    .map(
-                            item ->
-                                    RsEvent.builder()
-                                            .eventName(item.getEventName())
-                                            .keyword(item.getKeyword())
-                                            .userId(item.getId())
-                                            .voteNum(item.getVoteNum())
-                                            .build()).collect(Collectors.toList());
-    List<RankDto> rankDtoList = rankDtoRepository.findAll();
-    List<RsEvent> sortedRsEventList = new ArrayList<>(rsEvents.size());
-    for (int i = 0; i < rsEvents.size(); i++) {
-      sortedRsEventList.add(null);
+    boolean all = start == null || end == null;
+    RsListResponseCache.CachedResponse cached = rsListResponseCache.get(
+        all ? "all" : start + ":" + end,
+        rsEventLeaderboard.getVersion(),
+        () -> all ? rsEventLeaderboard.getAll() : rsEventLeaderboard.getBetween(start, end));
+    return ResponseEntity.ok()
+        .eTag(cached.getETag())
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(cached.getBody());
+  }
+
+  /** The k best placed events: paid ranks at their position, the most voted events around them. */
+  @GetMapping("/rs/top")
+  public ResponseEntity<?> getTopRsEvents(@RequestParam int k) {
+    if (k < 1) {
+      throw new RequestNotValidException("invalid k");
     }
-    for (RankDto rankDto : rankDtoList) {
-      sortedRsEventList.set(rankDto.getRankPos() - 1, rsEvents.remove((int) rankDto.getRsEventId() - 1));
+    if ("database".equals(rsListSource)) {
+      return ResponseEntity.ok(rsService.getTop(k));
     }
-    rsEvents = rsEvents.stream().sorted(Comparator.comparing(RsEvent::getVoteNum).reversed()).collect(Collectors.toList());
-    for (int i = 0; i < sortedRsEventList.size(); i++) {
-      if (sortedRsEventList.get(i) == null) {
-        sortedRsEventList.set(i, rsEvents.remove(0));
+    RsListResponseCache.CachedResponse cached = rsListResponseCache.get(
+        "top:" + k, rsEventLeaderboard.getVersion(), () -> rsEventLeaderboard.getTop(k));
+    return ResponseEntity.ok()
+        .eTag(cached.getETag())
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(cached.getBody());
+  }
+
+  /** The whole ranking as one JSON event per line, written while it is read from the database. */
+  @GetMapping("/rs/list/stream")
+  public ResponseEntity<StreamingResponseBody> streamRsEventList() {
+    StreamingResponseBody body = outputStream -> rsService.forEachRankedEvent(rsEvent -> {
+      try {
+        outputStream.write(objectMapper.writeValueAsBytes(rsEvent));
+        outputStream.write('\n');
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
       }
-    }
-    if (start == null || end == null) {
-      return ResponseEntity.ok(sortedRsEventList);
-    }
-    return ResponseEntity.ok(sortedRsEventList.subList(start - 1, end));
+    });
+    return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(body);
   }
 
   @GetMapping("/rs/{index}")
   public ResponseEntity<RsEvent> getRsEvent(@PathVariable int index) {
-    List<RsEvent> rsEvents =
-        rsEventRepository.findAll().stream()
-            .map(
-                item ->
-                    RsEvent.builder()
-                        .eventName(item.getEventName())
-                        .keyword(item.getKeyword())
-                        .userId(item.getId())
-                        .voteNum(item.getVoteNum())
-                        .build())
-            .collect(Collectors.toList());
-    if (index < 1 || index > rsEvents.size()) {
-      throw new RequestNotValidException("invalid index");
+    if ("database".equals(rsListSource)) {
+      return ResponseEntity.ok(rsService.getRsEventPage(index, index, null).getRsEvents().get(0));
+    }
+    return ResponseEntity.ok(rsEventLeaderboard.get(index));
+  }
+
+  /** Events matching q by eventName or keyword, most voted first; the last word matches as a prefix. */
+  @GetMapping("/rs/search")
+  public ResponseEntity<List<RsEvent>> search(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+    if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+      throw new RequestNotValidException("invalid limit");
     }
-    return ResponseEntity.ok(rsEvents.get(index - 1));
+    return ResponseEntity.ok(rsEventLeaderboard.search(q, limit));
   }
 
   @PostMapping("/rs/event")
@@ -115,20 +147,69 @@ public class RsController {
             .voteNum(0)
             .user(userDto.get())
             .build();
-    rsEventRepository.save(build);
+    rsEventLeaderboard.add(rsEventRepository.save(build));
     return ResponseEntity.created(null).build();
   }
 
+  /**
+   * Voters are rate limited by address as well as by the userId in the body, so changing that id
+   * does not buy a fresh bucket. A retry carrying the same Idempotency-Key gets the first answer
+   * back instead of voting again, without spending a rate limit token.
+   */
   @PostMapping("/rs/vote/{id}")
-  public ResponseEntity vote(@PathVariable int id, @RequestBody Vote vote) {
-    rsService.vote(vote, id);
-    return ResponseEntity.ok().build();
+  public CompletableFuture<ResponseEntity> vote(@PathVariable int id, @RequestBody Vote vote,
+                                                @RequestHeader(value = IDEMPOTENCY_KEY, required = false)
+                                                    String idempotencyKey,
+                                                HttpServletRequest request) {
+    String address = "addr:" + request.getRemoteAddr();
+    String caller = address + ":user:" + vote.getUserId();
+    String fingerprint = vote.getVoteNum() + "@" + vote.getTime();
+    return idempotencyCache.execute("vote:" + id + ":" + caller, idempotencyKey, fingerprint, () -> {
+      rateLimiter.acquire(RateLimiter.Endpoint.VOTE, address);
+      rateLimiter.acquire(RateLimiter.Endpoint.VOTE, "user:" + vote.getUserId());
+      return writeExecutor.submit(() -> {
+        rsService.vote(vote, id);
+        return ResponseEntity.ok().build();
+      });
+    });
   }
 
+  /** Votes for many events at once; answers 400 when allOrNothing is set and any vote is rejected. */
+  @PostMapping("/rs/votes")
+  public ResponseEntity<List<VoteResult>> voteAll(
+      @RequestBody List<Vote> votes, @RequestParam(defaultValue = "false") boolean allOrNothing) {
+    List<VoteResult> results = bulkVoteService.voteAll(votes, allOrNothing);
+    if (allOrNothing && results.stream().anyMatch(result -> !result.isAccepted())) {
+      return ResponseEntity.badRequest().body(results);
+    }
+    return ResponseEntity.ok(results);
+  }
+
+  /**
+   * Buyers are rate limited by address, and also by their X-User-Id header when they send one, so
+   * changing the header does not buy a fresh bucket. Retries with the same Idempotency-Key are
+   * answered like the first attempt, without spending a rate limit token; reusing the key for
+   * another trade answers 422.
+   */
   @PostMapping("/rs/buy/{id}")
-  public ResponseEntity buy(@PathVariable int id, @RequestBody Trade trade){
-    rsService.buy(trade, id);
-    return ResponseEntity.ok().build();
+  public CompletableFuture<ResponseEntity> buy(@PathVariable int id, @RequestBody Trade trade,
+                                               @RequestHeader(value = "X-User-Id", required = false) String userId,
+                                               @RequestHeader(value = IDEMPOTENCY_KEY, required = false)
+                                                   String idempotencyKey,
+                                               HttpServletRequest request) {
+    String address = "addr:" + request.getRemoteAddr();
+    String caller = userId != null ? address + ":user:" + userId : address;
+    String fingerprint = trade.getRank() + ":" + trade.getAmount();
+    return idempotencyCache.execute("buy:" + id + ":" + caller, idempotencyKey, fingerprint, () -> {
+      rateLimiter.acquire(RateLimiter.Endpoint.BUY, address);
+      if (userId != null) {
+        rateLimiter.acquire(RateLimiter.Endpoint.BUY, "user:" + userId);
+      }
+      return writeExecutor.submit(() -> {
+        rsService.buy(trade, id);
+        return ResponseEntity.ok().build();
+      });
+    });
   }
 
   @ExceptionHandler(RequestNotValidException.class)
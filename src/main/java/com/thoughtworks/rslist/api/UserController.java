@@ -1,24 +1,38 @@
 package com.thoughtworks.rslist.api;
 
+import com.thoughtworks.rslist.component.WriteExecutor;
 import com.thoughtworks.rslist.domain.User;
 import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.exception.Error;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.exception.WriteRejectedException;
 import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.service.UserDeletionService;
+import com.thoughtworks.rslist.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 public class UserController {
   @Autowired UserRepository userRepository;
+  @Autowired UserService userService;
+  @Autowired UserDeletionService userDeletionService;
+  @Autowired WriteExecutor writeExecutor;
 
   @PostMapping("/user")
-  public void register(@RequestBody @Valid User user) {
+  public CompletableFuture<Void> register(@RequestBody @Valid User user) {
     UserDto userDto = new UserDto();
     userDto.setGender(user.getGender());
     userDto.setPhone(user.getPhone());
@@ -26,12 +40,35 @@ public class UserController {
     userDto.setAge(user.getAge());
     userDto.setEmail(user.getEmail());
     userDto.setUserName(user.getUserName());
-    userRepository.save(userDto);
+    return writeExecutor.submit(() -> {
+      userRepository.save(userDto);
+      return null;
+    });
+  }
+
+  @PostMapping("/users")
+  public ResponseEntity registerAll(@RequestBody List<User> users) {
+    userService.registerAll(users);
+    return ResponseEntity.created(null).build();
   }
 
   @DeleteMapping("/user/{id}")
-  public ResponseEntity deleteUser(@PathVariable int id) {
-    userRepository.deleteById(id);
+  public ResponseEntity deleteUser(@PathVariable int id, @RequestParam(defaultValue = "false") boolean async) {
+    if (async) {
+      userDeletionService.deleteLater(id);
+      return ResponseEntity.accepted().build();
+    }
+    userDeletionService.delete(id);
     return ResponseEntity.ok().build();
   }
+
+  @ExceptionHandler(RequestNotValidException.class)
+  public ResponseEntity<Error> handleRequestErrorHandler(RequestNotValidException e) {
+    return ResponseEntity.badRequest().body(new Error(e.getMessage()));
+  }
+
+  @ExceptionHandler(WriteRejectedException.class)
+  public ResponseEntity<Error> handleWriteRejected(WriteRejectedException e) {
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new Error(e.getMessage()));
+  }
 }
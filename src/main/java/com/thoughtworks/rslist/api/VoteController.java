@@ -1,36 +1,56 @@
 package com.thoughtworks.rslist.api;
 
+import com.thoughtworks.rslist.component.VoteShards;
 import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.domain.VoteMismatch;
 import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.service.VoteLedgerService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 public class VoteController {
   @Autowired VoteRepository voteRepository;
+  @Autowired VoteLedgerService voteLedgerService;
+  @Autowired VoteShards voteShards;
 
+  /** Votes of a user for one event, or for every event when rsEventId is left out. */
   @GetMapping("/voteRecord")
+  @Transactional(readOnly = true)
   public ResponseEntity<List<Vote>> getVoteRecord(
-      @RequestParam int userId, @RequestParam int rsEventId, @RequestParam int pageIndex) {
+      @RequestParam int userId, @RequestParam(required = false) Integer rsEventId, @RequestParam int pageIndex) {
     Pageable pageable = PageRequest.of(pageIndex - 1, 5);
-    return ResponseEntity.ok(
-        voteRepository.findAllByUserIdAndRsEventId(userId, rsEventId, pageable).stream()
-            .map(
-                item ->
-                    Vote.builder()
-                        .voteNum(item.getNum())
-                        .userId(item.getUser().getId())
-                        .time(item.getLocalDateTime())
-                        .rsEventId(item.getRsEvent().getId())
-                        .build())
-            .collect(Collectors.toList()));
+    if (rsEventId == null) {
+      return ResponseEntity.ok(voteRepository.findVoteRecordsByUser(userId, pageable));
+    }
+    return ResponseEntity.ok(voteRepository.findVoteRecords(userId, rsEventId, pageable));
+  }
+
+  @GetMapping("/voteLedger/check")
+  public ResponseEntity<List<VoteMismatch>> checkVoteLedger() {
+    return ResponseEntity.ok(voteLedgerService.check());
+  }
+
+  @PostMapping("/voteLedger/rebuild")
+  public ResponseEntity<List<VoteMismatch>> rebuildVoteCounters() {
+    return ResponseEntity.ok(voteLedgerService.rebuild());
+  }
+
+  /** Moves votes to the shard they belong to after rs.vote.shards.urls changed; answers how many moved. */
+  @PostMapping("/voteShards/reshard")
+  public ResponseEntity<Integer> reshardVotes() {
+    if (!voteShards.isEnabled()) {
+      return ResponseEntity.badRequest().build();
+    }
+    return ResponseEntity.ok(voteShards.reshard());
   }
 }
@@ -0,0 +1,139 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.exception.IdempotencyKeyReusedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Results of recent writes by Idempotency-Key, so a client retrying a vote or buy gets the first
+ * answer back instead of voting or paying twice.
+ *
+ * <p>The first request with a key registers its pending result before it runs; duplicates that
+ * arrive meanwhile or later, for ttl-ms, are handed that same result without running anything.
+ * Only successful results are kept: when the write fails, waiting duplicates get the failure and
+ * the key is forgotten so a later retry runs again. A key reused with a different request body is
+ * refused with IdempotencyKeyReusedException (422). Bounded to max-entries keys, oldest first.
+ */
+@Component
+public class IdempotencyCache {
+  private final long ttlNanos;
+  private final LongSupplier nanoTime;
+  private final Map<String, Entry> entries;
+  private final AtomicLong replayed = new AtomicLong();
+  private final AtomicLong executed = new AtomicLong();
+
+  @Autowired
+  public IdempotencyCache(@Value("${rs.idempotency.ttl-ms:600000}") long ttlMillis,
+                          @Value("${rs.idempotency.max-entries:100000}") int maxEntries) {
+    this(ttlMillis, maxEntries, System::nanoTime);
+  }
+
+  IdempotencyCache(long ttlMillis, int maxEntries, LongSupplier nanoTime) {
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    this.nanoTime = nanoTime;
+    this.entries = new LinkedHashMap<String, Entry>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Runs write unless key was seen within the ttl, in which case the first result is returned.
+   * Without a key the write always runs. Keys are only compared within one scope, which should
+   * name the endpoint and the caller; fingerprint identifies the request body.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> CompletableFuture<T> execute(String scope, String key, String fingerprint,
+                                          Supplier<CompletableFuture<T>> write) {
+    if (key == null) {
+      return write.get();
+    }
+    String scopedKey = scope + ":" + key;
+    Entry entry = new Entry(new CompletableFuture<>(), fingerprint, nanoTime.getAsLong());
+    Entry existing;
+    synchronized (entries) {
+      expire(entry.createdAt);
+      existing = entries.putIfAbsent(scopedKey, entry);
+    }
+    if (existing != null) {
+      if (!existing.fingerprint.equals(fingerprint)) {
+        throw new IdempotencyKeyReusedException("Idempotency-Key was already used for a different request");
+      }
+      replayed.incrementAndGet();
+      return (CompletableFuture<T>) existing.result;
+    }
+    executed.incrementAndGet();
+    CompletableFuture<T> result;
+    try {
+      result = write.get();
+    } catch (RuntimeException e) {
+      forget(scopedKey, entry);
+      entry.result.completeExceptionally(e);
+      throw e;
+    }
+    result.whenComplete((value, error) -> {
+      if (error != null) {
+        forget(scopedKey, entry);
+        entry.result.completeExceptionally(error);
+      } else {
+        entry.result.complete(value);
+      }
+    });
+    return (CompletableFuture<T>) entry.result;
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public long getReplayed() {
+    return replayed.get();
+  }
+
+  public long getExecuted() {
+    return executed.get();
+  }
+
+  // Entries are in insertion order and share one ttl, so expired ones are always at the head.
+  private void expire(long now) {
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (iterator.hasNext()) {
+      if (now - iterator.next().createdAt <= ttlNanos) {
+        return;
+      }
+      iterator.remove();
+    }
+  }
+
+  private void forget(String scopedKey, Entry entry) {
+    synchronized (entries) {
+      entries.remove(scopedKey, entry);
+    }
+  }
+
+  private static final class Entry {
+    final CompletableFuture<Object> result;
+    final String fingerprint;
+    final long createdAt;
+
+    Entry(CompletableFuture<Object> result, String fingerprint, long createdAt) {
+      this.result = result;
+      this.fingerprint = fingerprint;
+      this.createdAt = createdAt;
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Comparator;
+
+@Getter
+@AllArgsConstructor
+class LeaderboardEntry {
+  static final Comparator<LeaderboardEntry> BY_VOTES =
+      Comparator.comparingInt(LeaderboardEntry::getVoteNum).reversed()
+          .thenComparingInt(LeaderboardEntry::getId);
+
+  private final int id;
+  private final String eventName;
+  private final String keyword;
+  private int voteNum;
+  private final int userId;
+
+  static LeaderboardEntry of(RsEventDto rsEventDto) {
+    return new LeaderboardEntry(
+        rsEventDto.getId(),
+        rsEventDto.getEventName(),
+        rsEventDto.getKeyword(),
+        rsEventDto.getVoteNum(),
+        rsEventDto.getUser() == null ? 0 : rsEventDto.getUser().getId());
+  }
+
+  void addVotes(int votes) {
+    voteNum += votes;
+  }
+
+  RsEvent toRsEvent() {
+    return RsEvent.builder().eventName(eventName).keyword(keyword).userId(id).voteNum(voteNum).build();
+  }
+}
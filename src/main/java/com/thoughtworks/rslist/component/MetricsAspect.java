@@ -0,0 +1,67 @@
+package com.thoughtworks.rslist.component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency histograms for the vote/buy service calls (rs.vote, rs.voteAll, rs.buy) and for every
+ * repository method (rs.repository), each tagged with its outcome: success or the exception's
+ * simple name.
+ */
+@Aspect
+@Component
+public class MetricsAspect {
+  private final MeterRegistry meterRegistry;
+  private final Map<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+  public MetricsAspect(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Around("execution(* com.thoughtworks.rslist.service.RsService.vote(..))"
+      + " || execution(* com.thoughtworks.rslist.service.RsService.buy(..))"
+      + " || execution(* com.thoughtworks.rslist.service.BulkVoteService.voteAll(..))")
+  public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+    return time("rs." + joinPoint.getSignature().getName(), Tags.empty(), joinPoint);
+  }
+
+  @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+  public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+    return time("rs.repository",
+        Tags.of("repository", repositoryName(joinPoint.getThis()), "method", joinPoint.getSignature().getName()),
+        joinPoint);
+  }
+
+  private Object time(String name, Tags tags, ProceedingJoinPoint joinPoint) throws Throwable {
+    Timer.Sample sample = Timer.start(meterRegistry);
+    String outcome = "success";
+    try {
+      return joinPoint.proceed();
+    } catch (Throwable e) {
+      outcome = e.getClass().getSimpleName();
+      throw e;
+    } finally {
+      sample.stop(Timer.builder(name)
+          .tags(tags)
+          .tag("outcome", outcome)
+          .publishPercentileHistogram()
+          .register(meterRegistry));
+    }
+  }
+
+  private String repositoryName(Object repository) {
+    return repositoryNames.computeIfAbsent(repository.getClass(), type -> {
+      Class<?>[] interfaces = AopProxyUtils.proxiedUserInterfaces(repository);
+      return interfaces.length > 0 ? interfaces[0].getSimpleName() : type.getSimpleName();
+    });
+  }
+}
@@ -0,0 +1,182 @@
+package com.thoughtworks.rslist.component;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Treap whose nodes carry subtree sizes, so elements can be addressed by their position in
+ * comparator order. Insert, remove and select are O(log n); iterating k elements from a given
+ * position is O(log n + k). Not thread safe, callers guard it.
+ */
+final class OrderStatisticTree<E> {
+  private final Comparator<? super E> comparator;
+  private Node<E> root;
+
+  OrderStatisticTree(Comparator<? super E> comparator) {
+    this.comparator = comparator;
+  }
+
+  int size() {
+    return size(root);
+  }
+
+  void clear() {
+    root = null;
+  }
+
+  void insert(E element) {
+    root = insert(root, new Node<>(element, ThreadLocalRandom.current().nextInt()));
+  }
+
+  void remove(E element) {
+    root = remove(root, element);
+  }
+
+  E select(int rank) {
+    if (rank < 0 || rank >= size()) {
+      throw new IndexOutOfBoundsException(String.valueOf(rank));
+    }
+    Node<E> node = root;
+    while (true) {
+      int leftSize = size(node.left);
+      if (rank < leftSize) {
+        node = node.left;
+      } else if (rank == leftSize) {
+        return node.element;
+      } else {
+        rank -= leftSize + 1;
+        node = node.right;
+      }
+    }
+  }
+
+  Iterator<E> iteratorFrom(int rank) {
+    Deque<Node<E>> stack = new ArrayDeque<>();
+    Node<E> node = root;
+    while (node != null) {
+      int leftSize = size(node.left);
+      if (rank < leftSize) {
+        stack.push(node);
+        node = node.left;
+      } else if (rank == leftSize) {
+        stack.push(node);
+        break;
+      } else {
+        rank -= leftSize + 1;
+        node = node.right;
+      }
+    }
+    return new Iterator<E>() {
+      @Override
+      public boolean hasNext() {
+        return !stack.isEmpty();
+      }
+
+      @Override
+      public E next() {
+        if (stack.isEmpty()) {
+          throw new NoSuchElementException();
+        }
+        Node<E> current = stack.pop();
+        for (Node<E> next = current.right; next != null; next = next.left) {
+          stack.push(next);
+        }
+        return current.element;
+      }
+    };
+  }
+
+  private Node<E> insert(Node<E> node, Node<E> fresh) {
+    if (node == null) {
+      return fresh;
+    }
+    if (fresh.priority > node.priority) {
+      split(node, fresh.element, fresh);
+      return update(fresh);
+    }
+    if (comparator.compare(fresh.element, node.element) < 0) {
+      node.left = insert(node.left, fresh);
+    } else {
+      node.right = insert(node.right, fresh);
+    }
+    return update(node);
+  }
+
+  private Node<E> remove(Node<E> node, E element) {
+    if (node == null) {
+      return null;
+    }
+    int cmp = comparator.compare(element, node.element);
+    if (cmp == 0) {
+      return merge(node.left, node.right);
+    }
+    if (cmp < 0) {
+      node.left = remove(node.left, element);
+    } else {
+      node.right = remove(node.right, element);
+    }
+    return update(node);
+  }
+
+  // Splits node into the elements below key (target.left) and the rest (target.right).
+  private void split(Node<E> node, E key, Node<E> target) {
+    if (node == null) {
+      target.left = null;
+      target.right = null;
+      return;
+    }
+    Node<E> holder = new Node<>(null, 0);
+    if (comparator.compare(node.element, key) < 0) {
+      split(node.right, key, holder);
+      node.right = holder.left;
+      target.left = update(node);
+      target.right = holder.right;
+    } else {
+      split(node.left, key, holder);
+      node.left = holder.right;
+      target.left = holder.left;
+      target.right = update(node);
+    }
+  }
+
+  private Node<E> merge(Node<E> lower, Node<E> upper) {
+    if (lower == null) {
+      return upper;
+    }
+    if (upper == null) {
+      return lower;
+    }
+    if (lower.priority > upper.priority) {
+      lower.right = merge(lower.right, upper);
+      return update(lower);
+    }
+    upper.left = merge(lower, upper.left);
+    return update(upper);
+  }
+
+  private static <E> int size(Node<E> node) {
+    return node == null ? 0 : node.size;
+  }
+
+  private static <E> Node<E> update(Node<E> node) {
+    node.size = size(node.left) + size(node.right) + 1;
+    return node;
+  }
+
+  private static final class Node<E> {
+    final E element;
+    final int priority;
+    int size = 1;
+    Node<E> left;
+    Node<E> right;
+
+    Node(E element, int priority) {
+      this.element = element;
+      this.priority = priority;
+    }
+  }
+}
@@ -0,0 +1,206 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.dto.RankDto;
+import com.thoughtworks.rslist.exception.FailedToBuyRankException;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.repository.RankDtoRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Decides who holds each paid rank without touching the database.
+ *
+ * <p>Every rank 1..max-position is an atomic slot holding the winning bid; a bid replaces the
+ * slot with compare-and-set only while it is higher than what the slot holds, so concurrent
+ * buyers of one rank get exactly one winner per price step. Winning bids are persisted by a
+ * single writer thread, in the order they won each rank. With ack=sync a buyer returns once its
+ * bid is persisted, with ack=async as soon as it has won. Either way a bid that fails to persist
+ * gives the rank back to the bid it replaced, unless it has been outbid meanwhile. The slots are
+ * filled from rank_pos on first use.
+ */
+@Slf4j
+@Component
+public class RankAuction {
+  public enum Ack {
+    SYNC,
+    ASYNC
+  }
+
+  @Getter
+  @AllArgsConstructor
+  public static final class Bid {
+    private final int rankPos;
+    private final int price;
+    private final int rsEventId;
+  }
+
+  // A won bid still waiting for the writer, linked to the bid it replaced.
+  private static final class Won {
+    final Bid bid;
+    Won replaced;
+    boolean persisted;
+
+    Won(Bid bid, Won replaced) {
+      this.bid = bid;
+      this.replaced = replaced;
+    }
+  }
+
+  private final RankDtoRepository rankDtoRepository;
+  private final AtomicReferenceArray<Won> slots;
+  private final Ack ack;
+  private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "rank-writer");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private volatile boolean loaded;
+
+  public RankAuction(RankDtoRepository rankDtoRepository,
+                     @Value("${rs.rank.max-position:1000}") int maxPosition,
+                     @Value("${rs.rank.ack:sync}") String ack) {
+    this.rankDtoRepository = rankDtoRepository;
+    this.slots = new AtomicReferenceArray<>(maxPosition + 1);
+    this.ack = Ack.valueOf(ack.toUpperCase());
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    writer.shutdown();
+    writer.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  /** The bid currently holding rankPos, or null when nobody bought it. */
+  public Bid get(int rankPos) {
+    checkRank(rankPos);
+    ensureLoaded();
+    Won won = slots.get(rankPos);
+    return won == null ? null : won.bid;
+  }
+
+  /**
+   * Places a bid and, when it wins, hands it to persist on the writer thread. Throws
+   * FailedToBuyRankException when the rank is already held at the same or a higher price.
+   */
+  public Bid bid(int rankPos, int price, int rsEventId, Consumer<Bid> persist) {
+    checkRank(rankPos);
+    ensureLoaded();
+    Bid bid = new Bid(rankPos, price, rsEventId);
+    while (true) {
+      Won current = slots.get(rankPos);
+      if (current != null && price <= current.bid.getPrice()) {
+        throw new FailedToBuyRankException("The amount you pay is not enough to buy that rank");
+      }
+      Won won = new Won(bid, current);
+      if (slots.compareAndSet(rankPos, current, won)) {
+        CompletableFuture<Void> persisted = CompletableFuture.runAsync(() -> persistInOrder(won, persist), writer);
+        if (ack == Ack.ASYNC) {
+          persisted.exceptionally(e -> {
+            log.error("Failed to persist bid of {} for rank {}", price, rankPos, e);
+            slots.compareAndSet(rankPos, won, current);
+            return null;
+          });
+          return bid;
+        }
+        try {
+          await(persisted);
+        } catch (RuntimeException e) {
+          // Give the rank back unless someone has outbid this one meanwhile.
+          slots.compareAndSet(rankPos, won, current);
+          throw e;
+        }
+        return bid;
+      }
+    }
+  }
+
+  /**
+   * Frees every rank held by one of rsEventIds, e.g. once those events are deleted, so the next
+   * bid wins it at any price. A rank outbid meanwhile is left alone.
+   */
+  public void release(Collection<Integer> rsEventIds) {
+    if (rsEventIds.isEmpty()) {
+      return;
+    }
+    ensureLoaded();
+    Set<Integer> released = new HashSet<>(rsEventIds);
+    for (int rankPos = 1; rankPos < slots.length(); rankPos++) {
+      Won won = slots.get(rankPos);
+      if (won != null && released.contains(won.bid.getRsEventId())) {
+        slots.compareAndSet(rankPos, won, null);
+      }
+    }
+  }
+
+  // Two winners of one rank may reach the writer in either order, so a bid first persists the
+  // bids it replaced that are still pending; their own tasks then find nothing left to do. A bid
+  // only counts as persisted once persist returned, so one that failed is tried again by its own
+  // task.
+  private void persistInOrder(Won won, Consumer<Bid> persist) {
+    Deque<Won> pending = new ArrayDeque<>();
+    for (Won next = won; next != null && !next.persisted; next = next.replaced) {
+      pending.push(next);
+    }
+    while (!pending.isEmpty()) {
+      Won next = pending.pop();
+      persist.accept(next.bid);
+      next.persisted = true;
+      next.replaced = null;
+    }
+  }
+
+  private void await(CompletableFuture<Void> persisted) {
+    try {
+      persisted.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private void checkRank(int rankPos) {
+    if (rankPos < 1 || rankPos >= slots.length()) {
+      throw new RequestNotValidException("invalid rank");
+    }
+  }
+
+  private void ensureLoaded() {
+    if (!loaded) {
+      synchronized (this) {
+        if (!loaded) {
+          ReadRouting.onPrimary(() -> {
+            for (RankDto rankDto : rankDtoRepository.findAll()) {
+              if (rankDto.getRankPos() < 1 || rankDto.getRankPos() >= slots.length()) {
+                log.warn("Ignoring rank {} beyond rs.rank.max-position", rankDto.getRankPos());
+                continue;
+              }
+              Won won = new Won(new Bid(rankDto.getRankPos(), rankDto.getPrice(), rankDto.getRsEventId()), null);
+              won.persisted = true;
+              slots.set(rankDto.getRankPos(), won);
+            }
+          });
+          loaded = true;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.exception.RateLimitedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets keyed by remote address and by user in front of the vote and buy endpoints
+ * (rs.rate-limit).
+ *
+ * <p>Each bucket is a single AtomicLong holding the time at which it will be full again
+ * (GCRA, equivalent to a token bucket of burst tokens refilled at per-second): a request is let
+ * through when that time is less than burst - 1 intervals away, and pushes it one interval further
+ * with compare-and-set. Buckets live in striped maps, so there is no lock shared by all users. A
+ * bucket that has refilled completely behaves exactly like a missing one, so such buckets are
+ * dropped every evict-interval-ms and memory only grows with the users active in that window.
+ */
+@Slf4j
+@Component
+public class RateLimiter {
+  public enum Endpoint {
+    VOTE,
+    BUY
+  }
+
+  private static final int STRIPES = 64;
+
+  private final boolean enabled;
+  private final long evictIntervalMillis;
+  private final LongSupplier nanoTime;
+  private final Map<Endpoint, Buckets> buckets = new EnumMap<>(Endpoint.class);
+  private ScheduledExecutorService evictor;
+
+  @Autowired
+  public RateLimiter(@Value("${rs.rate-limit.enabled:false}") boolean enabled,
+                     @Value("${rs.rate-limit.vote.per-second:10}") double votesPerSecond,
+                     @Value("${rs.rate-limit.vote.burst:20}") int voteBurst,
+                     @Value("${rs.rate-limit.buy.per-second:2}") double buysPerSecond,
+                     @Value("${rs.rate-limit.buy.burst:5}") int buyBurst,
+                     @Value("${rs.rate-limit.evict-interval-ms:60000}") long evictIntervalMillis) {
+    this(enabled, votesPerSecond, voteBurst, buysPerSecond, buyBurst, evictIntervalMillis, System::nanoTime);
+  }
+
+  RateLimiter(boolean enabled, double votesPerSecond, int voteBurst, double buysPerSecond, int buyBurst,
+              long evictIntervalMillis, LongSupplier nanoTime) {
+    this.enabled = enabled;
+    this.evictIntervalMillis = evictIntervalMillis;
+    this.nanoTime = nanoTime;
+    buckets.put(Endpoint.VOTE, new Buckets(votesPerSecond, voteBurst));
+    buckets.put(Endpoint.BUY, new Buckets(buysPerSecond, buyBurst));
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!enabled || evictIntervalMillis <= 0) {
+      return;
+    }
+    evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "rate-limit-evictor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    evictor.scheduleWithFixedDelay(() -> {
+      try {
+        evictIdle();
+      } catch (RuntimeException e) {
+        log.error("Failed to evict idle rate limit buckets", e);
+      }
+    }, evictIntervalMillis, evictIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    if (evictor != null) {
+      evictor.shutdown();
+      evictor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
+  /** Takes a token from the bucket of key, or throws RateLimitedException (429) if it is empty. */
+  public void acquire(Endpoint endpoint, String key) {
+    if (!enabled) {
+      return;
+    }
+    long waitNanos = buckets.get(endpoint).tryAcquire(key, nanoTime.getAsLong());
+    if (waitNanos > 0) {
+      throw new RateLimitedException("Too many requests, please retry later",
+          Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1)));
+    }
+  }
+
+  /** Drops every bucket that is full again; returns how many were dropped. */
+  int evictIdle() {
+    long now = nanoTime.getAsLong();
+    int evicted = 0;
+    for (Buckets endpointBuckets : buckets.values()) {
+      evicted += endpointBuckets.evictIdle(now);
+    }
+    return evicted;
+  }
+
+  public long getRejectedCount(Endpoint endpoint) {
+    return buckets.get(endpoint).rejected.get();
+  }
+
+  public int getBucketCount() {
+    int count = 0;
+    for (Buckets endpointBuckets : buckets.values()) {
+      count += endpointBuckets.size();
+    }
+    return count;
+  }
+
+  private static final class Buckets {
+    final long intervalNanos;
+    final long toleranceNanos;
+    final AtomicLong rejected = new AtomicLong();
+    @SuppressWarnings("unchecked")
+    final ConcurrentHashMap<String, AtomicLong>[] stripes = new ConcurrentHashMap[STRIPES];
+
+    Buckets(double perSecond, int burst) {
+      this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+      this.toleranceNanos = intervalNanos * Math.max(burst - 1, 0);
+      for (int i = 0; i < STRIPES; i++) {
+        stripes[i] = new ConcurrentHashMap<>();
+      }
+    }
+
+    // Returns 0 when a token was taken, otherwise how long until one is available.
+    long tryAcquire(String key, long now) {
+      AtomicLong fullAt = stripes[Math.floorMod(key.hashCode(), STRIPES)]
+          .computeIfAbsent(key, ignored -> new AtomicLong(now));
+      while (true) {
+        long current = fullAt.get();
+        long start = Math.max(current, now);
+        if (start - now > toleranceNanos) {
+          rejected.incrementAndGet();
+          return start - now - toleranceNanos;
+        }
+        if (fullAt.compareAndSet(current, start + intervalNanos)) {
+          return 0;
+        }
+      }
+    }
+
+    // A request racing with the removal may spend a token of the dropped bucket, which only ever
+    // lets one extra request through.
+    int evictIdle(long now) {
+      int evicted = 0;
+      for (ConcurrentHashMap<String, AtomicLong> stripe : stripes) {
+        for (Map.Entry<String, AtomicLong> entry : stripe.entrySet()) {
+          if (entry.getValue().get() - now <= 0 && stripe.remove(entry.getKey(), entry.getValue())) {
+            evicted++;
+          }
+        }
+      }
+      return evicted;
+    }
+
+    int size() {
+      int size = 0;
+      for (ConcurrentHashMap<String, AtomicLong> stripe : stripes) {
+        size += stripe.size();
+      }
+      return size;
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package com.thoughtworks.rslist.component;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Picks the primary or the replica for every connection once rs.datasource.replica.url is set.
+ *
+ * <p>Only read-only transactions go to the replica. A user whose write committed less than
+ * max-lag-ms ago reads from the primary, so they see their own vote even while the replica lags.
+ * Services report those writes with the user they were made for ({@link #recordWrite}); the user
+ * of a reading request comes from its X-User-Id header or userId parameter. Write
+ * requests, and code that fills in-memory state from the database ({@link #onPrimary}), never
+ * read from the replica at all. The per-thread state is static so that callers do not need the
+ * bean, which only exists while a replica is configured.
+ */
+public class ReadRouting {
+  public enum Target {
+    PRIMARY,
+    REPLICA
+  }
+
+  // Writers older than max-lag-ms are dropped once this many are remembered.
+  private static final int SWEEP_THRESHOLD = 10_000;
+
+  private static final ThreadLocal<Integer> CURRENT_USER = new ThreadLocal<>();
+  private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+
+  private final long maxLagMillis;
+  private final Map<Integer, Long> lastWrites = new ConcurrentHashMap<>();
+
+  public ReadRouting(long maxLagMillis) {
+    this.maxLagMillis = maxLagMillis;
+  }
+
+  public static Integer getCurrentUser() {
+    return CURRENT_USER.get();
+  }
+
+  public static void setCurrentUser(Integer userId) {
+    if (userId == null) {
+      CURRENT_USER.remove();
+    } else {
+      CURRENT_USER.set(userId);
+    }
+  }
+
+  public static boolean isPrimaryOnly() {
+    return Boolean.TRUE.equals(PRIMARY_ONLY.get());
+  }
+
+  public static void setPrimaryOnly(boolean primaryOnly) {
+    if (primaryOnly) {
+      PRIMARY_ONLY.set(true);
+    } else {
+      PRIMARY_ONLY.remove();
+    }
+  }
+
+  public static void clear() {
+    CURRENT_USER.remove();
+    PRIMARY_ONLY.remove();
+  }
+
+  /** Runs action with every read on the primary. */
+  public static void onPrimary(Runnable action) {
+    boolean previous = isPrimaryOnly();
+    setPrimaryOnly(true);
+    try {
+      action.run();
+    } finally {
+      setPrimaryOnly(previous);
+    }
+  }
+
+  /** Wraps work that is handed to another thread so it routes like the calling thread would. */
+  public static <T> Supplier<T> inheritContext(Supplier<T> work) {
+    Integer userId = getCurrentUser();
+    boolean primaryOnly = isPrimaryOnly();
+    return () -> {
+      Integer previousUserId = getCurrentUser();
+      boolean previousPrimaryOnly = isPrimaryOnly();
+      setCurrentUser(userId);
+      setPrimaryOnly(primaryOnly);
+      try {
+        return work.get();
+      } finally {
+        setCurrentUser(previousUserId);
+        setPrimaryOnly(previousPrimaryOnly);
+      }
+    };
+  }
+
+  /** Where the connection for the current transaction should come from. */
+  public Target route() {
+    Integer userId = getCurrentUser();
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      if (userId != null && TransactionSynchronizationManager.isActualTransactionActive()) {
+        recordTransactionWrite(userId);
+      }
+      return Target.PRIMARY;
+    }
+    if (isPrimaryOnly() || userId != null && wroteRecently(userId)) {
+      return Target.PRIMARY;
+    }
+    return Target.REPLICA;
+  }
+
+  /** Keeps the reads of userId on the primary for max-lag-ms; call it once their write committed. */
+  public void recordWrite(int userId) {
+    touch(userId);
+  }
+
+  // The replica can only catch up after the commit, so the window starts again when it completes.
+  private void recordTransactionWrite(int userId) {
+    touch(userId);
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCompletion(int status) {
+          touch(userId);
+        }
+      });
+    }
+  }
+
+  private void touch(int userId) {
+    long now = System.currentTimeMillis();
+    lastWrites.put(userId, now);
+    if (lastWrites.size() > SWEEP_THRESHOLD) {
+      lastWrites.values().removeIf(time -> now - time > maxLagMillis);
+    }
+  }
+
+  private boolean wroteRecently(int userId) {
+    Long time = lastWrites.get(userId);
+    return time != null && System.currentTimeMillis() - time <= maxLagMillis;
+  }
+}
@@ -0,0 +1,93 @@
+package com.thoughtworks.rslist.component;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+
+/**
+ * Splits the datasource into a primary (spring.datasource) and a replica (rs.datasource.replica)
+ * when rs.datasource.replica.url is set; without it everything stays on the single datasource.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "rs.datasource.replica", name = "url")
+public class ReplicaDataSourceConfiguration implements WebMvcConfigurer {
+  static final String USER_HEADER = "X-User-Id";
+
+  @Bean
+  public ReadRouting readRouting(@Value("${rs.datasource.replica.max-lag-ms:1000}") long maxLagMillis) {
+    return new ReadRouting(maxLagMillis);
+  }
+
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  @Bean
+  @ConfigurationProperties("rs.datasource.replica.hikari")
+  public HikariDataSource replicaDataSource(@Value("${rs.datasource.replica.url}") String url,
+                                            @Value("${rs.datasource.replica.username:}") String username,
+                                            @Value("${rs.datasource.replica.password:}") String password) {
+    return DataSourceBuilder.create().type(HikariDataSource.class)
+        .url(url).username(username).password(password).build();
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                               @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                               ReadRouting readRouting) {
+    return ReplicaRoutingDataSource.lazy(primaryDataSource, replicaDataSource, readRouting);
+  }
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    registry.addInterceptor(new AsyncHandlerInterceptor() {
+      @Override
+      public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ReadRouting.setCurrentUser(userId(request));
+        ReadRouting.setPrimaryOnly(!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod()));
+        return true;
+      }
+
+      @Override
+      public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                                 Object handler) {
+        ReadRouting.clear();
+      }
+
+      @Override
+      public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                  Exception ex) {
+        ReadRouting.clear();
+      }
+    });
+  }
+
+  private static Integer userId(HttpServletRequest request) {
+    String userId = request.getHeader(USER_HEADER);
+    if (userId == null) {
+      userId = request.getParameter("userId");
+    }
+    try {
+      return userId == null ? null : Integer.valueOf(userId.trim());
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package com.thoughtworks.rslist.component;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out primary or replica connections as {@link ReadRouting} decides. Use it through
+ * {@link #lazy}: transaction managers take a connection before the transaction is marked
+ * read-only, so the real connection has to be fetched on the first statement.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+  private final ReadRouting readRouting;
+
+  public ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReadRouting readRouting) {
+    this.readRouting = readRouting;
+    Map<Object, Object> targets = new HashMap<>();
+    targets.put(ReadRouting.Target.PRIMARY, primary);
+    targets.put(ReadRouting.Target.REPLICA, replica);
+    setTargetDataSources(targets);
+    setDefaultTargetDataSource(primary);
+    afterPropertiesSet();
+  }
+
+  public static DataSource lazy(DataSource primary, DataSource replica, ReadRouting readRouting) {
+    return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replica, readRouting));
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    return readRouting.route();
+  }
+}
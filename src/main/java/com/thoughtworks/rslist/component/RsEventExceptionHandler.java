@@ -3,7 +3,13 @@ package com.thoughtworks.rslist.component;
 import com.thoughtworks.rslist.api.RsController;
 import com.thoughtworks.rslist.exception.Error;
 import com.thoughtworks.rslist.exception.FailedToBuyRankException;
+import com.thoughtworks.rslist.exception.IdempotencyKeyReusedException;
+import com.thoughtworks.rslist.exception.RateLimitedException;
 import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.exception.VoteQueueFullException;
+import com.thoughtworks.rslist.exception.WriteRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -16,6 +22,28 @@ public class RsEventExceptionHandler {
         return ResponseEntity.badRequest().body(new Error(failedToBuyRankException.getMessage()));
     }
 
+    @ExceptionHandler(VoteQueueFullException.class)
+    public ResponseEntity<Error> voteQueueFullExceptionHandler(VoteQueueFullException voteQueueFullException) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new Error(voteQueueFullException.getMessage()));
+    }
+
+    @ExceptionHandler(WriteRejectedException.class)
+    public ResponseEntity<Error> writeRejectedExceptionHandler(WriteRejectedException writeRejectedException) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new Error(writeRejectedException.getMessage()));
+    }
+
+    @ExceptionHandler(RateLimitedException.class)
+    public ResponseEntity<Error> rateLimitedExceptionHandler(RateLimitedException rateLimitedException) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(rateLimitedException.getRetryAfterSeconds()))
+            .body(new Error(rateLimitedException.getMessage()));
+    }
+
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<Error> idempotencyKeyReusedExceptionHandler(IdempotencyKeyReusedException idempotencyKeyReusedException) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(new Error(idempotencyKeyReusedException.getMessage()));
+    }
+
     /*@ExceptionHandler(RequestNotValidException.class)
     public ResponseEntity<Error> requestNotValidExceptionHandler(RequestNotValidException requestNotValidException) {
         return ResponseEntity.badRequest().body(new Error((requestNotValidException.getMessage())));
@@ -0,0 +1,311 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.dto.RankDto;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.repository.RankDtoRepository;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory copy of the hot search ranking served by /rs/list.
+ *
+ * <p>Paid slots (rank_pos) are pinned to their position, every other event is kept ordered by
+ * votes in an {@link OrderStatisticTree}, so any window of the list is read without touching the
+ * database. The board is filled from the repositories on first use and then kept up to date by
+ * the write paths of {@link com.thoughtworks.rslist.service.RsService} and the controllers, and so
+ * is the {@link RsEventSearchIndex} behind {@link #search}.
+ */
+@Component
+public class RsEventLeaderboard {
+  private final RsEventRepository rsEventRepository;
+  private final RankDtoRepository rankDtoRepository;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<Integer, LeaderboardEntry> entries = new HashMap<>();
+  private final OrderStatisticTree<LeaderboardEntry> byVotes =
+      new OrderStatisticTree<>(LeaderboardEntry.BY_VOTES);
+  private final TreeMap<Integer, LeaderboardEntry> paidSlots = new TreeMap<>();
+  private final Map<Integer, Integer> paidRankByEventId = new HashMap<>();
+  private final RsEventSearchIndex searchIndex = new RsEventSearchIndex();
+  private final AtomicLong version = new AtomicLong();
+  private volatile boolean loaded;
+
+  public RsEventLeaderboard(RsEventRepository rsEventRepository, RankDtoRepository rankDtoRepository) {
+    this.rsEventRepository = rsEventRepository;
+    this.rankDtoRepository = rankDtoRepository;
+  }
+
+  /** Changes on every write, so anything derived from the board can tell when it went stale. */
+  public long getVersion() {
+    return version.get();
+  }
+
+  public int size() {
+    ensureLoaded();
+    lock.readLock().lock();
+    try {
+      return entries.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public List<RsEvent> getAll() {
+    ensureLoaded();
+    lock.readLock().lock();
+    try {
+      return window(1, entries.size());
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Returns positions start..end (1-based, inclusive), the way subList(start - 1, end) would. */
+  public List<RsEvent> getBetween(int start, int end) {
+    ensureLoaded();
+    lock.readLock().lock();
+    try {
+      if (start < 1 || end > entries.size() || start > end + 1) {
+        throw new RequestNotValidException("invalid index");
+      }
+      return window(start, end);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** The first k positions of the list, or the whole list when it is shorter; O(k + log n). */
+  public List<RsEvent> getTop(int k) {
+    ensureLoaded();
+    lock.readLock().lock();
+    try {
+      return window(1, Math.min(k, entries.size()));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** The event shown at position (1-based) of the full list, found in O(log n). */
+  public RsEvent get(int position) {
+    ensureLoaded();
+    lock.readLock().lock();
+    try {
+      if (position < 1 || position > entries.size()) {
+        throw new RequestNotValidException("invalid index");
+      }
+      LeaderboardEntry entry = paidSlots.get(position);
+      if (entry == null) {
+        int freeIndex = position - 1 - paidSlots.headMap(position).size();
+        entry = freeIndex < byVotes.size()
+            ? byVotes.select(freeIndex)
+            : paidSlots.tailMap(entries.size(), false).values().stream()
+                .skip(freeIndex - byVotes.size())
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("leaderboard out of sync"));
+      }
+      return entry.toRsEvent();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Events whose eventName or keyword contain every word of query, the last one as a prefix,
+   * ordered by votes.
+   */
+  public List<RsEvent> search(String query, int limit) {
+    ensureLoaded();
+    lock.readLock().lock();
+    try {
+      List<RsEvent> result = new ArrayList<>();
+      searchIndex.search(query, limit).forEach(entry -> result.add(entry.toRsEvent()));
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public void add(RsEventDto rsEventDto) {
+    ensureLoaded();
+    lock.writeLock().lock();
+    try {
+      version.incrementAndGet();
+      LeaderboardEntry entry = LeaderboardEntry.of(rsEventDto);
+      entries.put(entry.getId(), entry);
+      byVotes.insert(entry);
+      searchIndex.add(entry);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void addVotes(int rsEventId, int votes) {
+    ensureLoaded();
+    lock.writeLock().lock();
+    try {
+      version.incrementAndGet();
+      LeaderboardEntry entry = entries.get(rsEventId);
+      if (entry == null) {
+        return;
+      }
+      boolean paid = paidRankByEventId.containsKey(rsEventId);
+      if (!paid) {
+        byVotes.remove(entry);
+      }
+      searchIndex.addVotes(entry, votes);
+      if (!paid) {
+        byVotes.insert(entry);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Pins the event of rankDto to its rank, dropping whichever event held that rank before. */
+  public void assignRank(RankDto rankDto) {
+    ensureLoaded();
+    lock.writeLock().lock();
+    try {
+      version.incrementAndGet();
+      LeaderboardEntry previous = paidSlots.get(rankDto.getRankPos());
+      if (previous != null && previous.getId() != rankDto.getRsEventId()) {
+        removeEntry(previous.getId());
+      }
+      pin(rankDto);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(int rsEventId) {
+    ensureLoaded();
+    lock.writeLock().lock();
+    try {
+      version.incrementAndGet();
+      removeEntry(rsEventId);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void removeByUserId(int userId) {
+    ensureLoaded();
+    lock.writeLock().lock();
+    try {
+      version.incrementAndGet();
+      List<Integer> ids = new ArrayList<>();
+      for (LeaderboardEntry entry : entries.values()) {
+        if (entry.getUserId() == userId) {
+          ids.add(entry.getId());
+        }
+      }
+      ids.forEach(this::removeEntry);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void reload() {
+    lock.writeLock().lock();
+    try {
+      version.incrementAndGet();
+      entries.clear();
+      byVotes.clear();
+      paidSlots.clear();
+      paidRankByEventId.clear();
+      searchIndex.clear();
+      ReadRouting.onPrimary(() -> {
+        for (RsEventDto rsEventDto : rsEventRepository.findAll()) {
+          LeaderboardEntry entry = LeaderboardEntry.of(rsEventDto);
+          entries.put(entry.getId(), entry);
+          byVotes.insert(entry);
+          searchIndex.add(entry);
+        }
+        rankDtoRepository.findAll().forEach(this::pin);
+      });
+      loaded = true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void ensureLoaded() {
+    if (!loaded) {
+      lock.writeLock().lock();
+      try {
+        if (!loaded) {
+          reload();
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  // Paid ranks that point past the end of the list are shown after the vote-ordered events.
+  private List<RsEvent> window(int start, int end) {
+    int size = entries.size();
+    List<RsEvent> result = new ArrayList<>(Math.max(end - start + 1, 0));
+    if (start > end) {
+      return result;
+    }
+    int unpaidBefore = start - 1 - paidSlots.headMap(start).size();
+    Iterator<LeaderboardEntry> unpaid = byVotes.iteratorFrom(Math.min(unpaidBefore, byVotes.size()));
+    Iterator<LeaderboardEntry> overflow =
+        paidSlots.tailMap(size, false).values().stream()
+            .skip(Math.max(unpaidBefore - byVotes.size(), 0))
+            .iterator();
+    for (int position = start; position <= end; position++) {
+      LeaderboardEntry entry = paidSlots.get(position);
+      if (entry == null) {
+        entry = unpaid.hasNext() ? unpaid.next() : overflow.next();
+      }
+      result.add(entry.toRsEvent());
+    }
+    return result;
+  }
+
+  private void pin(RankDto rankDto) {
+    LeaderboardEntry entry = entries.get(rankDto.getRsEventId());
+    if (entry == null) {
+      return;
+    }
+    Integer heldRank = paidRankByEventId.put(entry.getId(), rankDto.getRankPos());
+    if (heldRank != null) {
+      paidSlots.remove(heldRank);
+    } else {
+      byVotes.remove(entry);
+    }
+    LeaderboardEntry displaced = paidSlots.put(rankDto.getRankPos(), entry);
+    if (displaced != null && displaced != entry) {
+      paidRankByEventId.remove(displaced.getId());
+      byVotes.insert(displaced);
+    }
+  }
+
+  private void removeEntry(int rsEventId) {
+    LeaderboardEntry entry = entries.remove(rsEventId);
+    if (entry == null) {
+      return;
+    }
+    searchIndex.remove(entry);
+    Integer rank = paidRankByEventId.remove(rsEventId);
+    if (rank != null) {
+      paidSlots.remove(rank);
+    } else {
+      byVotes.remove(entry);
+    }
+  }
+}
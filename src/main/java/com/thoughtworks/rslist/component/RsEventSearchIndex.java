@@ -0,0 +1,322 @@
+package com.thoughtworks.rslist.component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index from the words of eventName and keyword to the events that contain them.
+ *
+ * <p>Words live in a trie. The node of a word holds its posting list in vote order, and every
+ * node also keeps the TOP_SIZE most voted events under it, so a type-ahead search for a prefix
+ * walks the prefix and copies at most limit events, however many words start with it. The last
+ * word of a query matches as a prefix, every other word has to match exactly. Entries must be
+ * removed before their votes change and added back after, or changed through {@link #addVotes}.
+ * Not thread-safe, the leaderboard guards it with its own lock.
+ */
+class RsEventSearchIndex {
+  // As many events as the largest search limit; longer searches collect the whole subtree.
+  static final int TOP_SIZE = 100;
+
+  private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  private Node root = new Node(null, (char) 0, 0);
+
+  void add(LeaderboardEntry entry) {
+    for (String word : words(entry)) {
+      Node node = root;
+      for (int i = 0; i < word.length(); i++) {
+        node = node.child(word.charAt(i), true);
+        node.offer(entry);
+      }
+      if (node.posting == null) {
+        node.posting = new TreeSet<>(LeaderboardEntry.BY_VOTES);
+      }
+      node.posting.add(entry);
+    }
+  }
+
+  void remove(LeaderboardEntry entry) {
+    List<Node> shortened = new ArrayList<>();
+    unindex(entry, shortened);
+    for (String word : words(entry)) {
+      prune(find(word));
+    }
+    refill(shortened);
+  }
+
+  /**
+   * Changes the votes of an indexed entry. A rising entry only moves up in the nodes that held it,
+   * so their top events are refilled from below only when it lost votes.
+   */
+  void addVotes(LeaderboardEntry entry, int votes) {
+    List<Node> shortened = new ArrayList<>();
+    unindex(entry, shortened);
+    entry.addVotes(votes);
+    add(entry);
+    if (votes < 0) {
+      refill(shortened);
+    }
+  }
+
+  void clear() {
+    root = new Node(null, (char) 0, 0);
+  }
+
+  /** Up to limit events matching query, most voted first. */
+  List<LeaderboardEntry> search(String query, int limit) {
+    List<String> words = split(query);
+    if (words.isEmpty()) {
+      return Collections.emptyList();
+    }
+    String prefix = words.get(words.size() - 1);
+    Node prefixed = find(prefix);
+    if (prefixed == null || prefixed.topSize == 0) {
+      return Collections.emptyList();
+    }
+    List<NavigableSet<LeaderboardEntry>> exact = new ArrayList<>();
+    for (String word : words.subList(0, words.size() - 1)) {
+      Node node = find(word);
+      if (node == null || node.posting == null || node.posting.isEmpty()) {
+        return Collections.emptyList();
+      }
+      exact.add(node.posting);
+    }
+
+    // Walk the shortest exact posting list if there is one, else the top events of the prefix.
+    NavigableSet<LeaderboardEntry> shortest = null;
+    for (NavigableSet<LeaderboardEntry> posting : exact) {
+      if (shortest == null || posting.size() < shortest.size()) {
+        shortest = posting;
+      }
+    }
+    if (shortest == null) {
+      if (limit <= TOP_SIZE) {
+        return new ArrayList<>(Arrays.asList(prefixed.top).subList(0, Math.min(limit, prefixed.topSize)));
+      }
+      NavigableSet<LeaderboardEntry> all = new TreeSet<>(LeaderboardEntry.BY_VOTES);
+      collect(prefixed, all);
+      shortest = all;
+    }
+    List<LeaderboardEntry> result = new ArrayList<>(Math.min(limit, 16));
+    Iterator<LeaderboardEntry> candidates = shortest.iterator();
+    while (result.size() < limit && candidates.hasNext()) {
+      LeaderboardEntry candidate = candidates.next();
+      if (matches(candidate, exact, prefix, !exact.isEmpty())) {
+        result.add(candidate);
+      }
+    }
+    return result;
+  }
+
+  // Takes entry out of its postings and of the top events of every node above its words; nodes
+  // whose full top events lost it are added to shortened.
+  private void unindex(LeaderboardEntry entry, List<Node> shortened) {
+    for (String word : words(entry)) {
+      Node node = find(word);
+      if (node == null) {
+        continue;
+      }
+      if (node.posting != null) {
+        node.posting.remove(entry);
+      }
+      for (; node != root; node = node.parent) {
+        boolean full = node.topSize == TOP_SIZE;
+        if (node.drop(entry) && full) {
+          shortened.add(node);
+        }
+      }
+    }
+  }
+
+  // Recomputes the top events of the given nodes from their postings and children, deepest
+  // first so every child is complete before its parent reads it.
+  private static void refill(List<Node> shortened) {
+    shortened.sort(Comparator.comparingInt((Node node) -> node.depth).reversed());
+    for (Node node : shortened) {
+      if (!node.detached) {
+        node.refill();
+      }
+    }
+  }
+
+  // Detaches nodes that no longer lead to any word, from the word's node upwards.
+  private void prune(Node node) {
+    while (node != null && node != root && node.childCount == 0
+        && (node.posting == null || node.posting.isEmpty())) {
+      node.parent.removeChild(node.letter);
+      node.detached = true;
+      node = node.parent;
+    }
+  }
+
+  private Node find(String word) {
+    Node node = root;
+    for (int i = 0; i < word.length() && node != null; i++) {
+      node = node.child(word.charAt(i), false);
+    }
+    return node;
+  }
+
+  private static void collect(Node node, NavigableSet<LeaderboardEntry> into) {
+    if (node.posting != null) {
+      into.addAll(node.posting);
+    }
+    for (int i = 0; i < node.childCount; i++) {
+      collect(node.children[i], into);
+    }
+  }
+
+  private static boolean matches(LeaderboardEntry entry, List<NavigableSet<LeaderboardEntry>> exact, String prefix,
+                                 boolean checkPrefix) {
+    for (NavigableSet<LeaderboardEntry> posting : exact) {
+      if (!posting.contains(entry)) {
+        return false;
+      }
+    }
+    if (!checkPrefix) {
+      return true;
+    }
+    for (String word : words(entry)) {
+      if (word.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Set<String> words(LeaderboardEntry entry) {
+    Set<String> words = new LinkedHashSet<>(split(entry.getEventName()));
+    words.addAll(split(entry.getKeyword()));
+    return words;
+  }
+
+  static List<String> split(String text) {
+    List<String> words = new ArrayList<>();
+    if (text == null) {
+      return words;
+    }
+    for (String word : SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+      if (!word.isEmpty()) {
+        words.add(word);
+      }
+    }
+    return words;
+  }
+
+  private static final class Node {
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final char[] NO_LETTERS = new char[0];
+
+    final Node parent;
+    final char letter;
+    final int depth;
+    char[] letters = NO_LETTERS;
+    Node[] children = NO_CHILDREN;
+    int childCount;
+    // Events whose word ends here, or null when none ever did.
+    NavigableSet<LeaderboardEntry> posting;
+    // The most voted events of this subtree in vote order; all of them while fewer than TOP_SIZE.
+    LeaderboardEntry[] top = new LeaderboardEntry[4];
+    int topSize;
+    boolean detached;
+
+    Node(Node parent, char letter, int depth) {
+      this.parent = parent;
+      this.letter = letter;
+      this.depth = depth;
+    }
+
+    Node child(char letter, boolean create) {
+      int index = Arrays.binarySearch(letters, 0, childCount, letter);
+      if (index >= 0) {
+        return children[index];
+      }
+      if (!create) {
+        return null;
+      }
+      index = -index - 1;
+      if (childCount == letters.length) {
+        letters = Arrays.copyOf(letters, Math.max(2, childCount * 2));
+        children = Arrays.copyOf(children, letters.length);
+      }
+      System.arraycopy(letters, index, letters, index + 1, childCount - index);
+      System.arraycopy(children, index, children, index + 1, childCount - index);
+      Node child = new Node(this, letter, depth + 1);
+      letters[index] = letter;
+      children[index] = child;
+      childCount++;
+      return child;
+    }
+
+    void removeChild(char letter) {
+      int index = Arrays.binarySearch(letters, 0, childCount, letter);
+      if (index >= 0) {
+        System.arraycopy(letters, index + 1, letters, index, childCount - index - 1);
+        System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+        childCount--;
+        children[childCount] = null;
+      }
+    }
+
+    void offer(LeaderboardEntry entry) {
+      int index = Arrays.binarySearch(top, 0, topSize, entry, LeaderboardEntry.BY_VOTES);
+      if (index >= 0) {
+        return;
+      }
+      index = -index - 1;
+      if (index >= TOP_SIZE) {
+        return;
+      }
+      if (topSize == top.length && topSize < TOP_SIZE) {
+        top = Arrays.copyOf(top, Math.min(TOP_SIZE, topSize * 2));
+      }
+      int moved = Math.min(topSize, TOP_SIZE - 1) - index;
+      System.arraycopy(top, index, top, index + 1, moved);
+      top[index] = entry;
+      topSize = Math.min(topSize + 1, TOP_SIZE);
+    }
+
+    boolean drop(LeaderboardEntry entry) {
+      int index = Arrays.binarySearch(top, 0, topSize, entry, LeaderboardEntry.BY_VOTES);
+      if (index < 0) {
+        return false;
+      }
+      System.arraycopy(top, index + 1, top, index, topSize - index - 1);
+      top[--topSize] = null;
+      return true;
+    }
+
+    void refill() {
+      NavigableSet<LeaderboardEntry> best = new TreeSet<>(LeaderboardEntry.BY_VOTES);
+      if (posting != null) {
+        for (LeaderboardEntry entry : posting) {
+          if (best.size() == TOP_SIZE) {
+            break;
+          }
+          best.add(entry);
+        }
+      }
+      for (int i = 0; i < childCount; i++) {
+        Node child = children[i];
+        for (int j = 0; j < child.topSize; j++) {
+          best.add(child.top[j]);
+          if (best.size() > TOP_SIZE) {
+            best.pollLast();
+          }
+        }
+      }
+      top = best.toArray(new LeaderboardEntry[Math.max(4, best.size())]);
+      topSize = best.size();
+    }
+  }
+}
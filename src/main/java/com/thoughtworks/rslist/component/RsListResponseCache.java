@@ -0,0 +1,98 @@
+package com.thoughtworks.rslist.component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Serialized /rs/list bodies, kept per window as long as the ranking version they were built
+ * from is current. Each body carries a strong ETag (hash of its bytes) so a polling client gets
+ * 304 Not Modified without the list being rebuilt or serialized again. Bounded, least recently
+ * used windows are evicted first.
+ */
+@Component
+public class RsListResponseCache {
+  private final ObjectMapper objectMapper;
+  private final Map<String, CachedResponse> responses;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  public RsListResponseCache(ObjectMapper objectMapper, @Value("${rs.list.cache.max-entries:1024}") int maxEntries) {
+    this.objectMapper = objectMapper;
+    this.responses = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+        if (size() > maxEntries) {
+          evictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /** Returns the body cached for key at version, building it from body when missing or stale. */
+  public CachedResponse get(String key, long version, Supplier<?> body) {
+    synchronized (responses) {
+      CachedResponse cached = responses.get(key);
+      if (cached != null && cached.getVersion() == version) {
+        hits.incrementAndGet();
+        return cached;
+      }
+    }
+    misses.incrementAndGet();
+    CachedResponse fresh = serialize(version, body.get());
+    synchronized (responses) {
+      CachedResponse cached = responses.get(key);
+      if (cached == null || cached.getVersion() < version) {
+        responses.put(key, fresh);
+      }
+    }
+    return fresh;
+  }
+
+  public int size() {
+    synchronized (responses) {
+      return responses.size();
+    }
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  private CachedResponse serialize(long version, Object body) {
+    try {
+      byte[] bytes = objectMapper.writeValueAsBytes(body);
+      return new CachedResponse(version, bytes, "\"" + DigestUtils.md5DigestAsHex(bytes) + "\"");
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Failed to serialize rs list", e);
+    }
+  }
+
+  @Getter
+  @AllArgsConstructor
+  public static class CachedResponse {
+    private final long version;
+    private final byte[] body;
+    private final String eTag;
+  }
+}
@@ -0,0 +1,74 @@
+package com.thoughtworks.rslist.component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the counters kept by the vote batcher, the /rs/list response cache, the write executor,
+ * the rate limiter and the idempotency cache.
+ */
+@Component
+public class RsMetrics implements MeterBinder {
+  private final VoteBatcher voteBatcher;
+  private final RsListResponseCache rsListResponseCache;
+  private final WriteExecutor writeExecutor;
+  private final RateLimiter rateLimiter;
+  private final IdempotencyCache idempotencyCache;
+
+  public RsMetrics(VoteBatcher voteBatcher, RsListResponseCache rsListResponseCache, WriteExecutor writeExecutor,
+                   RateLimiter rateLimiter, IdempotencyCache idempotencyCache) {
+    this.voteBatcher = voteBatcher;
+    this.rsListResponseCache = rsListResponseCache;
+    this.writeExecutor = writeExecutor;
+    this.rateLimiter = rateLimiter;
+    this.idempotencyCache = idempotencyCache;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("rs.vote.batch.queue.depth", voteBatcher, VoteBatcher::getQueueDepth).register(registry);
+    FunctionTimer.builder("rs.vote.batch.flush", voteBatcher,
+        VoteBatcher::getFlushCount, VoteBatcher::getTotalFlushNanos, TimeUnit.NANOSECONDS).register(registry);
+    TimeGauge.builder("rs.vote.batch.flush.last", voteBatcher, TimeUnit.NANOSECONDS, VoteBatcher::getLastFlushNanos)
+        .register(registry);
+    TimeGauge.builder("rs.vote.batch.flush.max", voteBatcher, TimeUnit.NANOSECONDS, VoteBatcher::getMaxFlushNanos)
+        .register(registry);
+    FunctionCounter.builder("rs.vote.batch.votes", voteBatcher, VoteBatcher::getFlushedVotes)
+        .tag("result", "flushed").register(registry);
+    FunctionCounter.builder("rs.vote.batch.votes", voteBatcher, VoteBatcher::getFailedVotes)
+        .tag("result", "failed").register(registry);
+    FunctionCounter.builder("rs.vote.batch.votes", voteBatcher, VoteBatcher::getRejectedVotes)
+        .tag("result", "rejected").register(registry);
+
+    FunctionCounter.builder("rs.list.cache.requests", rsListResponseCache, RsListResponseCache::getHits)
+        .tag("result", "hit").register(registry);
+    FunctionCounter.builder("rs.list.cache.requests", rsListResponseCache, RsListResponseCache::getMisses)
+        .tag("result", "miss").register(registry);
+    FunctionCounter.builder("rs.list.cache.evictions", rsListResponseCache, RsListResponseCache::getEvictions)
+        .register(registry);
+    Gauge.builder("rs.list.cache.size", rsListResponseCache, RsListResponseCache::size).register(registry);
+
+    Gauge.builder("rs.write.active", writeExecutor, WriteExecutor::getActiveCount).register(registry);
+    Gauge.builder("rs.write.queue.depth", writeExecutor, WriteExecutor::getQueueDepth).register(registry);
+    FunctionCounter.builder("rs.write.rejected", writeExecutor, WriteExecutor::getRejectedCount).register(registry);
+
+    for (RateLimiter.Endpoint endpoint : RateLimiter.Endpoint.values()) {
+      FunctionCounter.builder("rs.ratelimit.rejected", rateLimiter, limiter -> limiter.getRejectedCount(endpoint))
+          .tag("endpoint", endpoint.name().toLowerCase()).register(registry);
+    }
+    Gauge.builder("rs.ratelimit.buckets", rateLimiter, RateLimiter::getBucketCount).register(registry);
+
+    FunctionCounter.builder("rs.idempotency.requests", idempotencyCache, IdempotencyCache::getExecuted)
+        .tag("result", "executed").register(registry);
+    FunctionCounter.builder("rs.idempotency.requests", idempotencyCache, IdempotencyCache::getReplayed)
+        .tag("result", "replayed").register(registry);
+    Gauge.builder("rs.idempotency.keys", idempotencyCache, IdempotencyCache::size).register(registry);
+  }
+}
@@ -0,0 +1,365 @@
+package com.thoughtworks.rslist.component;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Optional append-only journal of won rank trades (rs.rank.journal.enabled), written instead of
+ * inserting every rank_record on the buy path.
+ *
+ * <p>Trades are fixed-width records in memory-mapped segment files of segment-records records
+ * each. A trade is appended inside the transaction that changes rank_pos, before it commits, with
+ * a pending marker; the marker becomes committed or aborted once that transaction completes, and
+ * only committed records are loaded or replayed. A record left pending by a crash is settled on
+ * startup by looking for its trade in rank_pos, and a torn record at the end of the last segment
+ * is ignored. A background task bulk-loads new records into rank_record every load-interval-ms,
+ * stopping at the first record still pending, then moves the checkpoint past them and deletes
+ * segments that are fully loaded. After a crash, whatever the checkpoint has not passed is loaded
+ * again on startup, so the journal is created eagerly even with lazy initialization. A crash
+ * between the insert and the checkpoint loads a batch again; rank_record keeps each record's
+ * segment and index under a unique key, so the records it already holds are skipped.
+ *
+ * <p>Records reach the page cache at once and survive a crash of the process. To survive a crash
+ * of the machine they are forced to disk every force-every-records appends, before the trade
+ * commits, and every force-interval-ms; with both at 0 that is left to the operating system.
+ */
+@Slf4j
+@Lazy(false)
+@Component
+public class TradeJournal {
+  static final int RECORD_SIZE = 24;
+  private static final int COMMITTED = 0x54524431;
+  private static final int PENDING = 0x54524430;
+  private static final int ABORTED = 0x54524458;
+  private static final String SEGMENT_SUFFIX = ".journal";
+  private static final String CHECKPOINT = "checkpoint";
+  private static final String INSERT_RECORD = "INSERT IGNORE INTO rank_record "
+      + "(rank_pos, price, rs_event_id, traded_at, journal_segment, journal_index) VALUES (?, ?, ?, ?, ?, ?)";
+  private static final String COUNT_RANK =
+      "SELECT COUNT(*) FROM rank_pos WHERE rank_pos = ? AND price = ? AND rs_event_id = ?";
+
+  @Getter
+  @AllArgsConstructor
+  public static final class Entry {
+    private final int rankPos;
+    private final int price;
+    private final int rsEventId;
+    private final long timestamp;
+    private final long segment;
+    private final int index;
+  }
+
+  // Where the next record goes: segment number and record index within it.
+  @AllArgsConstructor
+  private static final class Position {
+    final long segment;
+    final int index;
+
+    boolean before(Position other) {
+      return segment < other.segment || segment == other.segment && index < other.index;
+    }
+  }
+
+  private final JdbcTemplate jdbcTemplate;
+  private final boolean enabled;
+  private final Path dir;
+  private final int segmentRecords;
+  private final long loadIntervalMillis;
+  private final int forceEveryRecords;
+  private final long forceIntervalMillis;
+  private final ConcurrentNavigableMap<Long, MappedByteBuffer> segments = new ConcurrentSkipListMap<>();
+
+  private final Object loadLock = new Object();
+
+  private volatile Position end;
+  private int unforced;
+  private Position loaded;
+  private ScheduledExecutorService loader;
+
+  public TradeJournal(JdbcTemplate jdbcTemplate,
+                      @Value("${rs.rank.journal.enabled:false}") boolean enabled,
+                      @Value("${rs.rank.journal.dir:journal}") String dir,
+                      @Value("${rs.rank.journal.segment-records:65536}") int segmentRecords,
+                      @Value("${rs.rank.journal.load-interval-ms:1000}") long loadIntervalMillis,
+                      @Value("${rs.rank.journal.force-every-records:0}") int forceEveryRecords,
+                      @Value("${rs.rank.journal.force-interval-ms:1000}") long forceIntervalMillis) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.enabled = enabled;
+    this.dir = Paths.get(dir);
+    this.segmentRecords = segmentRecords;
+    this.loadIntervalMillis = loadIntervalMillis;
+    this.forceEveryRecords = forceEveryRecords;
+    this.forceIntervalMillis = forceIntervalMillis;
+  }
+
+  @PostConstruct
+  public void start() throws IOException {
+    if (!enabled) {
+      return;
+    }
+    open();
+    loader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "trade-journal-loader");
+      thread.setDaemon(true);
+      return thread;
+    });
+    loader.scheduleWithFixedDelay(() -> {
+      try {
+        load();
+      } catch (RuntimeException e) {
+        log.error("Failed to load trade journal into rank_record", e);
+      }
+    }, loadIntervalMillis, loadIntervalMillis, TimeUnit.MILLISECONDS);
+    if (forceIntervalMillis > 0) {
+      loader.scheduleWithFixedDelay(this::force, forceIntervalMillis, forceIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    if (loader == null) {
+      return;
+    }
+    loader.shutdown();
+    loader.awaitTermination(10, TimeUnit.SECONDS);
+    load();
+    force();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Appends a trade. Inside a transaction the record stays pending until the transaction
+   * completes and counts only if it commits; outside of one it counts at once.
+   */
+  public void append(int rankPos, int price, int rsEventId) {
+    boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+    Position position = write(rankPos, price, rsEventId, inTransaction ? PENDING : COMMITTED);
+    if (inTransaction) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCompletion(int status) {
+          mark(position, status == TransactionSynchronization.STATUS_COMMITTED ? COMMITTED : ABORTED);
+        }
+      });
+    }
+  }
+
+  private synchronized Position write(int rankPos, int price, int rsEventId, int marker) {
+    Position position = end;
+    if (position.index == segmentRecords) {
+      if (unforced > 0) {
+        segments.get(position.segment).force();
+      }
+      position = new Position(position.segment + 1, 0);
+      segments.put(position.segment, map(position.segment));
+    }
+    MappedByteBuffer buffer = segments.get(position.segment);
+    int offset = position.index * RECORD_SIZE;
+    buffer.putInt(offset, rankPos);
+    buffer.putInt(offset + 4, price);
+    buffer.putInt(offset + 8, rsEventId);
+    buffer.putLong(offset + 12, System.currentTimeMillis());
+    buffer.putInt(offset + 20, marker);
+    end = new Position(position.segment, position.index + 1);
+    if (forceEveryRecords > 0 && ++unforced >= forceEveryRecords) {
+      buffer.force();
+      unforced = 0;
+    }
+    return position;
+  }
+
+  private synchronized void mark(Position position, int marker) {
+    segments.get(position.segment).putInt(position.index * RECORD_SIZE + 20, marker);
+  }
+
+  /** Writes every mapped segment through to disk. */
+  void force() {
+    segments.values().forEach(MappedByteBuffer::force);
+  }
+
+  /** Hands every record still kept in the journal, oldest first, to consumer. */
+  public void replay(Consumer<Entry> consumer) {
+    Map.Entry<Long, MappedByteBuffer> first = segments.firstEntry();
+    if (first != null) {
+      read(new Position(first.getKey(), 0), end, false, consumer);
+    }
+  }
+
+  /** Inserts the records past the checkpoint into rank_record and moves the checkpoint. */
+  void load() {
+    synchronized (loadLock) {
+      loadUpTo(end);
+    }
+  }
+
+  // Runs beside append: records below end are complete and later segments are never touched. Stops
+  // at the first pending record, which may still commit.
+  private void loadUpTo(Position limit) {
+    if (!loaded.before(limit)) {
+      return;
+    }
+    List<Object[]> rows = new ArrayList<>();
+    Position to = read(loaded, limit, true,
+        entry -> rows.add(new Object[] {entry.getRankPos(), entry.getPrice(), entry.getRsEventId(),
+            new Timestamp(entry.getTimestamp()), entry.getSegment(), entry.getIndex()}));
+    if (!loaded.before(to)) {
+      return;
+    }
+    if (!rows.isEmpty()) {
+      jdbcTemplate.batchUpdate(INSERT_RECORD, rows);
+    }
+    loaded = to;
+    writeCheckpoint(to);
+    for (Long segment : new ArrayList<>(segments.headMap(to.segment).keySet())) {
+      segments.remove(segment);
+      delete(segmentPath(segment));
+    }
+  }
+
+  // Hands the committed records from..to to consumer and returns where it stopped: at to, at a
+  // torn record, or at the first pending one if stopAtPending is set.
+  private Position read(Position from, Position to, boolean stopAtPending, Consumer<Entry> consumer) {
+    Map<Long, MappedByteBuffer> range = segments.subMap(from.segment, true, to.segment, true);
+    for (Map.Entry<Long, MappedByteBuffer> segment : range.entrySet()) {
+      MappedByteBuffer buffer = segment.getValue();
+      int first = segment.getKey() == from.segment ? from.index : 0;
+      int last = segment.getKey() == to.segment ? to.index : segmentRecords;
+      for (int index = first; index < last; index++) {
+        int offset = index * RECORD_SIZE;
+        int marker = buffer.getInt(offset + 20);
+        if (marker == PENDING && stopAtPending || !isRecord(marker)) {
+          return new Position(segment.getKey(), index);
+        }
+        if (marker == COMMITTED) {
+          consumer.accept(new Entry(buffer.getInt(offset), buffer.getInt(offset + 4), buffer.getInt(offset + 8),
+              buffer.getLong(offset + 12), segment.getKey(), index));
+        }
+      }
+    }
+    return to;
+  }
+
+  private static boolean isRecord(int marker) {
+    return marker == COMMITTED || marker == PENDING || marker == ABORTED;
+  }
+
+  private void open() throws IOException {
+    Files.createDirectories(dir);
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SEGMENT_SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        long segment = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        segments.put(segment, map(segment));
+      }
+    }
+    if (segments.isEmpty()) {
+      segments.put(0L, map(0));
+    }
+    long last = segments.lastKey();
+    MappedByteBuffer buffer = segments.get(last);
+    int index = 0;
+    while (index < segmentRecords && isRecord(buffer.getInt(index * RECORD_SIZE + 20))) {
+      index++;
+    }
+    end = new Position(last, index);
+    loaded = readCheckpoint();
+    settlePending();
+  }
+
+  // A record still pending after a crash belongs to the last trade before it, which committed
+  // exactly when rank_pos holds it; no later trade of that rank can have replaced it.
+  private void settlePending() {
+    for (Map.Entry<Long, MappedByteBuffer> segment : segments.tailMap(loaded.segment, true).entrySet()) {
+      MappedByteBuffer buffer = segment.getValue();
+      int last = segment.getKey() == end.segment ? end.index : segmentRecords;
+      for (int index = 0; index < last; index++) {
+        int offset = index * RECORD_SIZE;
+        if (buffer.getInt(offset + 20) != PENDING) {
+          continue;
+        }
+        Integer count = jdbcTemplate.queryForObject(COUNT_RANK, Integer.class,
+            buffer.getInt(offset), buffer.getInt(offset + 4), buffer.getInt(offset + 8));
+        boolean committed = count != null && count > 0;
+        log.info("Trade journal record {}/{} was pending, {}", segment.getKey(), index,
+            committed ? "found in rank_pos" : "dropped");
+        buffer.putInt(offset + 20, committed ? COMMITTED : ABORTED);
+      }
+    }
+  }
+
+  private MappedByteBuffer map(long segment) {
+    try (FileChannel channel = FileChannel.open(segmentPath(segment),
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_SIZE);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Path segmentPath(long segment) {
+    return dir.resolve(String.format("%020d%s", segment, SEGMENT_SUFFIX));
+  }
+
+  private Position readCheckpoint() throws IOException {
+    Path checkpoint = dir.resolve(CHECKPOINT);
+    if (!Files.exists(checkpoint)) {
+      return new Position(segments.firstKey(), 0);
+    }
+    String[] parts = new String(Files.readAllBytes(checkpoint), StandardCharsets.US_ASCII).trim().split(" ");
+    return new Position(Long.parseLong(parts[0]), Integer.parseInt(parts[1]));
+  }
+
+  private void writeCheckpoint(Position position) {
+    Path checkpoint = dir.resolve(CHECKPOINT);
+    Path next = dir.resolve(CHECKPOINT + ".next");
+    try {
+      Files.write(next, (position.segment + " " + position.index).getBytes(StandardCharsets.US_ASCII));
+      Files.move(next, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void delete(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      log.warn("Could not delete loaded journal segment {}", file, e);
+    }
+  }
+}
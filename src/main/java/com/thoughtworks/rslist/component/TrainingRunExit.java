@@ -0,0 +1,23 @@
+package com.thoughtworks.rslist.component;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stops the application as soon as it is ready when rs.startup.exit-when-ready is set, for the
+ * training run of ./gradlew cdsArchive that records which classes a startup loads.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty("rs.startup.exit-when-ready")
+public class TrainingRunExit implements ApplicationListener<ApplicationReadyEvent> {
+  @Override
+  public void onApplicationEvent(ApplicationReadyEvent event) {
+    log.info("Training run finished, exiting");
+    System.exit(SpringApplication.exit(event.getApplicationContext()));
+  }
+}
@@ -0,0 +1,304 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.exception.VoteQueueFullException;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Optional write-behind path for votes (rs.vote.batching.enabled).
+ *
+ * <p>Validated votes are queued and a single flusher thread writes them every flush-interval-ms
+ * or batch-size votes, whichever comes first: one JDBC batch of vote rows plus one summed
+ * vote_num update per user and per event, all in one transaction. Queued votes arrive with their
+ * budget reserved in {@link VoteBudgets}; the flush commits or releases those reservations, so a
+ * user cannot overspend before it lands. The debit of each user is still guarded by the user
+ * row, in case the resident budget drifted above it; the votes of a user whose debit does not fit
+ * fail and the rest of the batch is written. With ack=sync a caller returns once its batch is
+ * committed, with ack=async as soon as the vote is queued.
+ */
+@Slf4j
+@Component
+public class VoteBatcher {
+  private static final String DEBIT_USER = "UPDATE user SET vote_num = vote_num - ? WHERE id = ? AND vote_num >= ?";
+  private static final String CREDIT_EVENT = "UPDATE rs_event SET vote_num = vote_num + ? WHERE id = ?";
+
+  public enum Ack {
+    SYNC,
+    ASYNC
+  }
+
+  private final JdbcTemplate jdbcTemplate;
+  private final VoteRepository voteRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final RsEventLeaderboard rsEventLeaderboard;
+  private final VoteBudgets voteBudgets;
+  private final ObjectProvider<ReadRouting> readRouting;
+  private final boolean enabled;
+  private final Ack ack;
+  private final int batchSize;
+  private final long flushIntervalMillis;
+  private final BlockingQueue<PendingVote> queue;
+
+  private final AtomicLong flushCount = new AtomicLong();
+  private final AtomicLong flushedVotes = new AtomicLong();
+  private final AtomicLong failedVotes = new AtomicLong();
+  private final AtomicLong rejectedVotes = new AtomicLong();
+  private final AtomicLong lastFlushNanos = new AtomicLong();
+  private final AtomicLong maxFlushNanos = new AtomicLong();
+  private final AtomicLong totalFlushNanos = new AtomicLong();
+
+  private volatile boolean running;
+  private Thread flusher;
+
+  public VoteBatcher(JdbcTemplate jdbcTemplate, VoteRepository voteRepository,
+                     PlatformTransactionManager transactionManager, RsEventLeaderboard rsEventLeaderboard,
+                     VoteBudgets voteBudgets, ObjectProvider<ReadRouting> readRouting,
+                     @Value("${rs.vote.batching.enabled:false}") boolean enabled,
+                     @Value("${rs.vote.batching.ack:sync}") String ack,
+                     @Value("${rs.vote.batching.batch-size:500}") int batchSize,
+                     @Value("${rs.vote.batching.flush-interval-ms:50}") long flushIntervalMillis,
+                     @Value("${rs.vote.batching.queue-capacity:10000}") int queueCapacity) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.voteRepository = voteRepository;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.rsEventLeaderboard = rsEventLeaderboard;
+    this.voteBudgets = voteBudgets;
+    this.readRouting = readRouting;
+    this.enabled = enabled;
+    this.ack = Ack.valueOf(ack.toUpperCase());
+    this.batchSize = batchSize;
+    this.flushIntervalMillis = flushIntervalMillis;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    running = true;
+    flusher = new Thread(this::run, "vote-batcher");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    if (flusher == null) {
+      return;
+    }
+    running = false;
+    flusher.join();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Queues a validated vote whose budget is reserved in {@link VoteBudgets} and takes over that
+   * reservation, releasing it if the vote is never written.
+   */
+  public void submit(Vote vote, int rsEventId) {
+    PendingVote pendingVote = new PendingVote(vote.getUserId(), rsEventId, vote.getVoteNum(), vote.getTime(),
+        ack == Ack.SYNC ? new CompletableFuture<>() : null);
+    if (!queue.offer(pendingVote)) {
+      voteBudgets.release(vote.getUserId(), vote.getVoteNum());
+      rejectedVotes.incrementAndGet();
+      throw new VoteQueueFullException("Too many votes in flight, please retry later");
+    }
+    if (pendingVote.done != null) {
+      pendingVote.done.join();
+    }
+  }
+
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  public long getFlushCount() {
+    return flushCount.get();
+  }
+
+  public long getFlushedVotes() {
+    return flushedVotes.get();
+  }
+
+  public long getFailedVotes() {
+    return failedVotes.get();
+  }
+
+  public long getRejectedVotes() {
+    return rejectedVotes.get();
+  }
+
+  public long getLastFlushNanos() {
+    return lastFlushNanos.get();
+  }
+
+  public long getMaxFlushNanos() {
+    return maxFlushNanos.get();
+  }
+
+  public long getTotalFlushNanos() {
+    return totalFlushNanos.get();
+  }
+
+  private void run() {
+    List<PendingVote> batch = new ArrayList<>(batchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        collect(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        running = false;
+      }
+      if (!batch.isEmpty()) {
+        flush(batch);
+        batch.clear();
+      }
+    }
+  }
+
+  private void collect(List<PendingVote> batch) throws InterruptedException {
+    PendingVote first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+    if (first == null) {
+      return;
+    }
+    batch.add(first);
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+    while (batch.size() < batchSize) {
+      queue.drainTo(batch, batchSize - batch.size());
+      long remaining = deadline - System.nanoTime();
+      if (batch.size() >= batchSize || remaining <= 0 || !running) {
+        return;
+      }
+      PendingVote next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+      if (next == null) {
+        return;
+      }
+      batch.add(next);
+    }
+  }
+
+  private void flush(List<PendingVote> batch) {
+    long startedAt = System.nanoTime();
+    Map<Integer, Integer> debits = new HashMap<>();
+    for (PendingVote pendingVote : batch) {
+      debits.merge(pendingVote.userId, pendingVote.num, Integer::sum);
+    }
+    Map<Integer, Integer> credits = new HashMap<>();
+    try {
+      Set<Integer> overspent = transactionTemplate.execute(status -> write(batch, debits, credits));
+      List<PendingVote> failed = new ArrayList<>();
+      debits.forEach((userId, votes) -> {
+        if (overspent.contains(userId)) {
+          voteBudgets.release(userId, votes);
+          voteBudgets.evict(userId);
+        } else {
+          voteBudgets.commit(userId, votes);
+        }
+      });
+      readRouting.ifAvailable(routing -> debits.keySet().stream()
+          .filter(userId -> !overspent.contains(userId))
+          .forEach(routing::recordWrite));
+      credits.forEach(rsEventLeaderboard::addVotes);
+      RequestNotValidException notEnoughVotes = new RequestNotValidException("not enough votes");
+      for (PendingVote pendingVote : batch) {
+        boolean written = !overspent.contains(pendingVote.userId);
+        if (!written) {
+          failed.add(pendingVote);
+        }
+        if (pendingVote.done != null && written) {
+          pendingVote.done.complete(null);
+        } else if (pendingVote.done != null) {
+          pendingVote.done.completeExceptionally(notEnoughVotes);
+        }
+      }
+      if (!failed.isEmpty()) {
+        log.warn("Dropped {} batched votes of {} users without enough votes left", failed.size(), overspent.size());
+      }
+      flushedVotes.addAndGet(batch.size() - failed.size());
+      failedVotes.addAndGet(failed.size());
+    } catch (RuntimeException e) {
+      log.error("Failed to flush {} votes", batch.size(), e);
+      failedVotes.addAndGet(batch.size());
+      debits.forEach(voteBudgets::release);
+      batch.stream().filter(pendingVote -> pendingVote.done != null)
+          .forEach(pendingVote -> pendingVote.done.completeExceptionally(e));
+    } finally {
+      long elapsed = System.nanoTime() - startedAt;
+      flushCount.incrementAndGet();
+      lastFlushNanos.set(elapsed);
+      totalFlushNanos.addAndGet(elapsed);
+      maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+    }
+  }
+
+  // Debits every user first and writes only the votes of users whose debit fitted; returns the
+  // users whose debit did not and fills credits with the votes written per event.
+  private Set<Integer> write(List<PendingVote> batch, Map<Integer, Integer> debits, Map<Integer, Integer> credits) {
+    List<Integer> userIds = new ArrayList<>(debits.keySet());
+    int[] debited = jdbcTemplate.batchUpdate(DEBIT_USER, userIds.stream()
+        .map(userId -> new Object[] {debits.get(userId), userId, debits.get(userId)})
+        .collect(Collectors.toList()));
+    Set<Integer> overspent = new HashSet<>();
+    for (int i = 0; i < debited.length; i++) {
+      if (debited[i] == 0) {
+        overspent.add(userIds.get(i));
+      }
+    }
+    List<Vote> votes = new ArrayList<>(batch.size());
+    for (PendingVote pendingVote : batch) {
+      if (!overspent.contains(pendingVote.userId)) {
+        votes.add(new Vote(pendingVote.userId, pendingVote.rsEventId, pendingVote.time, pendingVote.num));
+        credits.merge(pendingVote.rsEventId, pendingVote.num, Integer::sum);
+      }
+    }
+    if (!votes.isEmpty()) {
+      voteRepository.insertVotes(votes);
+      jdbcTemplate.batchUpdate(CREDIT_EVENT, toArgs(credits));
+    }
+    return overspent;
+  }
+
+  private static List<Object[]> toArgs(Map<Integer, Integer> deltas) {
+    return deltas.entrySet().stream()
+        .map(entry -> new Object[] {entry.getValue(), entry.getKey()})
+        .collect(Collectors.toList());
+  }
+
+  @AllArgsConstructor
+  private static class PendingVote {
+    final int userId;
+    final int rsEventId;
+    final int num;
+    final LocalDateTime time;
+    final CompletableFuture<Void> done;
+  }
+}
@@ -0,0 +1,222 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.UserRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Resident copy of every active user's vote budget, so a vote is checked and reserved without
+ * reading the user row.
+ *
+ * <p>Budgets sit in fixed-size chunks of an int-indexed long table, one slot per user id; a slot
+ * packs the budget last known to be in the user table with the votes reserved but not yet
+ * written, and changes with compare-and-set only. A user's slot is loaded from the user table on
+ * first use, and a chunk is allocated only once a user in its range is found there; ids above the
+ * highest user id are turned away by reading that maximum off the primary key, so made-up ids
+ * neither grow the table nor read user rows. Writers {@link #reserve} before touching the
+ * database, then {@link #commit} once the debit is committed or {@link #release} when it is not.
+ * Drift, from debits that bypass the table or from a failed write, is corrected by
+ * {@link #reconcile} against the vote ledger.
+ */
+@Component
+public class VoteBudgets {
+  private static final int CHUNK_BITS = 12;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final long UNKNOWN = Long.MIN_VALUE;
+
+  private final UserRepository userRepository;
+  private final AtomicReferenceArray<AtomicLongArray> chunks =
+      new AtomicReferenceArray<>((Integer.MAX_VALUE >>> CHUNK_BITS) + 1);
+  private final AtomicInteger maxUserId = new AtomicInteger(-1);
+
+  public VoteBudgets(UserRepository userRepository) {
+    this.userRepository = userRepository;
+  }
+
+  /** Users whose slot had nothing reserved when it was taken, with that slot. */
+  public static final class Idle {
+    final List<Integer> userIds = new ArrayList<>();
+    final List<Long> slots = new ArrayList<>();
+
+    public List<Integer> getUserIds() {
+      return userIds;
+    }
+  }
+
+  /** Sets votes aside for userId; false when the user is unknown or has not enough left. */
+  public boolean reserve(int userId, int votes) {
+    if (userId < 0 || votes < 0) {
+      return false;
+    }
+    int index = userId & (CHUNK_SIZE - 1);
+    while (true) {
+      AtomicLongArray chunk = chunks.get(userId >>> CHUNK_BITS);
+      long slot = chunk == null ? UNKNOWN : chunk.get(index);
+      if (slot == UNKNOWN) {
+        if (!load(userId)) {
+          return false;
+        }
+        continue;
+      }
+      if (committed(slot) - pending(slot) < votes) {
+        return false;
+      }
+      if (chunk.compareAndSet(index, slot, pack(committed(slot), pending(slot) + votes))) {
+        return true;
+      }
+    }
+  }
+
+  /** The reserved votes were written to the user table. */
+  public void commit(int userId, int votes) {
+    update(userId, votes, votes);
+  }
+
+  /** The reserved votes were not written; they are available again. */
+  public void release(int userId, int votes) {
+    update(userId, 0, votes);
+  }
+
+  /** Votes taken from the user table without a reservation. */
+  public void spend(int userId, int votes) {
+    update(userId, votes, 0);
+  }
+
+  /** Votes given back to the user table, e.g. when the events they went to are deleted. */
+  public void refund(int userId, int votes) {
+    update(userId, -votes, 0);
+  }
+
+  /**
+   * Forgets userId, so a later reservation reads the user table again. A slot with votes reserved
+   * is kept, as reloading it would lose the reservations still to be settled; the ledger
+   * reconciles it once they are.
+   */
+  public void evict(int userId) {
+    if (userId < 0) {
+      return;
+    }
+    AtomicLongArray chunk = chunks.get(userId >>> CHUNK_BITS);
+    if (chunk == null) {
+      return;
+    }
+    int index = userId & (CHUNK_SIZE - 1);
+    while (true) {
+      long slot = chunk.get(index);
+      if (slot == UNKNOWN || pending(slot) > 0 || chunk.compareAndSet(index, slot, UNKNOWN)) {
+        return;
+      }
+    }
+  }
+
+  /** Takes the slots of every loaded user with nothing reserved; pass it to reconcile afterwards. */
+  public Idle idle() {
+    Idle idle = new Idle();
+    for (int chunkIndex = 0; chunkIndex < chunks.length(); chunkIndex++) {
+      AtomicLongArray chunk = chunks.get(chunkIndex);
+      if (chunk == null) {
+        continue;
+      }
+      for (int index = 0; index < CHUNK_SIZE; index++) {
+        long slot = chunk.get(index);
+        if (slot != UNKNOWN && pending(slot) == 0) {
+          idle.userIds.add((chunkIndex << CHUNK_BITS) | index);
+          idle.slots.add(slot);
+        }
+      }
+    }
+    return idle;
+  }
+
+  /**
+   * Sets each idle user's budget to expected, read after idle was taken. A slot that changed in
+   * between is left for the next round, as its user may have a write the expected value missed.
+   * Returns how many budgets were corrected.
+   */
+  public int reconcile(Idle idle, IntToLongFunction expected) {
+    int corrected = 0;
+    for (int i = 0; i < idle.userIds.size(); i++) {
+      int userId = idle.userIds.get(i);
+      long slot = idle.slots.get(i);
+      int budget = (int) expected.applyAsLong(userId);
+      if (budget != committed(slot)
+          && chunks.get(userId >>> CHUNK_BITS).compareAndSet(userId & (CHUNK_SIZE - 1), slot, pack(budget, 0))) {
+        corrected++;
+      }
+    }
+    return corrected;
+  }
+
+  private void update(int userId, int spent, int reserved) {
+    if (userId < 0) {
+      return;
+    }
+    AtomicLongArray chunk = chunks.get(userId >>> CHUNK_BITS);
+    if (chunk == null) {
+      return;
+    }
+    int index = userId & (CHUNK_SIZE - 1);
+    while (true) {
+      long slot = chunk.get(index);
+      if (slot == UNKNOWN) {
+        return;
+      }
+      long next = pack(committed(slot) - spent, Math.max(pending(slot) - reserved, 0));
+      if (chunk.compareAndSet(index, slot, next)) {
+        return;
+      }
+    }
+  }
+
+  private boolean load(int userId) {
+    if (userId > maxUserId.get() && userId > refreshMaxUserId()) {
+      return false;
+    }
+    Integer[] voteNum = new Integer[1];
+    ReadRouting.onPrimary(() -> voteNum[0] = userRepository.findById(userId).map(UserDto::getVoteNum).orElse(null));
+    if (voteNum[0] == null) {
+      return false;
+    }
+    chunk(userId >>> CHUNK_BITS).compareAndSet(userId & (CHUNK_SIZE - 1), UNKNOWN, pack(voteNum[0], 0));
+    return true;
+  }
+
+  // Ids come from a sequence, so the highest one only grows; re-read when an id is beyond it.
+  private int refreshMaxUserId() {
+    Integer[] max = new Integer[1];
+    ReadRouting.onPrimary(() -> max[0] = userRepository.findMaxId());
+    return maxUserId.accumulateAndGet(max[0] == null ? -1 : max[0], Math::max);
+  }
+
+  private AtomicLongArray chunk(int chunkIndex) {
+    AtomicLongArray chunk = chunks.get(chunkIndex);
+    if (chunk == null) {
+      AtomicLongArray fresh = new AtomicLongArray(CHUNK_SIZE);
+      for (int index = 0; index < CHUNK_SIZE; index++) {
+        fresh.set(index, UNKNOWN);
+      }
+      chunks.compareAndSet(chunkIndex, null, fresh);
+      chunk = chunks.get(chunkIndex);
+    }
+    return chunk;
+  }
+
+  private static long pack(int committed, int pending) {
+    return ((long) committed << 32) | (pending & 0xFFFFFFFFL);
+  }
+
+  private static int committed(long slot) {
+    return (int) (slot >> 32);
+  }
+
+  private static int pending(long slot) {
+    return (int) slot;
+  }
+}
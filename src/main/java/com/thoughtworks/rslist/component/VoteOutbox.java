@@ -0,0 +1,232 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.domain.VoteTotal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Carries vote rows bound for {@link VoteShards} through the vote_outbox table of the main
+ * database, so a shard only ever holds votes whose transaction committed.
+ *
+ * <p>{@link #add} writes the rows inside the caller's transaction, next to the counters it moves.
+ * Once that commits they are copied to their shards, oldest first, and deleted from the outbox;
+ * rows a shard refused stay and are retried every retry-interval-ms, also after a restart, so the
+ * outbox is created eagerly even with lazy initialization. A copy repeated because the delete
+ * did not happen is skipped by outbox id. Until its row is copied, a vote is counted by the
+ * outbox sums but missing from the history read off the shards.
+ *
+ * <p>Deletes take the queued rows out of the outbox in the caller's transaction and the copied
+ * ones off the shards once it commits. Work that reads or changes shards and outbox together runs
+ * {@link #paused}, so no row is counted twice or missed; it must be paused before its transaction
+ * takes any lock, as copying waits for the rows it deletes.
+ */
+@Slf4j
+@Lazy(false)
+@Component
+public class VoteOutbox {
+  private static final int COPY_BATCH_SIZE = 1000;
+  private static final String INSERT_VOTE =
+      "INSERT INTO vote_outbox (local_date_time, num, user_id, rs_event_id) VALUES (?, ?, ?, ?)";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final VoteShards voteShards;
+  private final TransactionTemplate transactionTemplate;
+  private final long retryIntervalMillis;
+  private final ReentrantLock copyLock = new ReentrantLock();
+  private final AtomicBoolean dirty = new AtomicBoolean(true);
+  private ScheduledExecutorService retrier;
+
+  public VoteOutbox(JdbcTemplate jdbcTemplate, VoteShards voteShards, PlatformTransactionManager transactionManager,
+                    @Value("${rs.vote.shards.outbox-retry-interval-ms:1000}") long retryIntervalMillis) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.voteShards = voteShards;
+    // Copies also run right after a commit, while the committed transaction is still bound.
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.retryIntervalMillis = retryIntervalMillis;
+  }
+
+  @PostConstruct
+  public void start() {
+    if (!voteShards.isEnabled()) {
+      return;
+    }
+    retrier = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "vote-outbox");
+      thread.setDaemon(true);
+      return thread;
+    });
+    retrier.scheduleWithFixedDelay(() -> {
+      dirty.set(true);
+      copy();
+    }, 0, retryIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    if (retrier != null) {
+      retrier.shutdown();
+      retrier.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
+  /** Queues votes for their shards; they are copied once the current transaction, if any, commits. */
+  public void add(List<Vote> votes) {
+    jdbcTemplate.batchUpdate(INSERT_VOTE, votes, votes.size(), (ps, vote) -> {
+      ps.setTimestamp(1, vote.getTime() == null ? null : Timestamp.valueOf(vote.getTime()));
+      ps.setInt(2, vote.getVoteNum());
+      ps.setInt(3, vote.getUserId());
+      ps.setInt(4, vote.getRsEventId());
+    });
+    afterCommit(() -> {
+      dirty.set(true);
+      copy();
+    });
+  }
+
+  public void deleteByEvents(List<Integer> rsEventIds) {
+    jdbcTemplate.update("DELETE FROM vote_outbox WHERE rs_event_id IN (" + placeholders(rsEventIds.size()) + ")",
+        rsEventIds.toArray());
+    afterCommit(() -> paused(() -> {
+      voteShards.deleteByEvents(rsEventIds);
+      return null;
+    }));
+  }
+
+  public void deleteByUserOnEvents(int userId, List<Integer> rsEventIds) {
+    List<Object> args = new ArrayList<>(rsEventIds);
+    args.add(0, userId);
+    jdbcTemplate.update("DELETE FROM vote_outbox WHERE user_id = ? AND rs_event_id IN ("
+        + placeholders(rsEventIds.size()) + ")", args.toArray());
+    afterCommit(() -> paused(() -> {
+      voteShards.deleteByUserOnEvents(userId, rsEventIds);
+      return null;
+    }));
+  }
+
+  /** Runs work while no rows move from the outbox to the shards; calls may nest. */
+  public <T> T paused(Supplier<T> work) {
+    copyLock.lock();
+    try {
+      return work.get();
+    } finally {
+      copyLock.unlock();
+      copy();
+    }
+  }
+
+  /**
+   * Copies every queued vote to its shard; returns at once when another thread is copying, which
+   * then also picks up the rows that made this call.
+   */
+  public void copy() {
+    if (!voteShards.isEnabled() || copyLock.isHeldByCurrentThread()) {
+      return;
+    }
+    while (dirty.get() && copyLock.tryLock()) {
+      try {
+        while (dirty.getAndSet(false)) {
+          copyAll();
+        }
+      } catch (RuntimeException e) {
+        log.warn("Failed to copy votes to their shards, retrying in {} ms", retryIntervalMillis, e);
+        return;
+      } finally {
+        copyLock.unlock();
+      }
+    }
+  }
+
+  /** Votes queued on rsEventIds, summed per voter. */
+  public List<VoteTotal> sumByUserOnEvents(List<Integer> rsEventIds) {
+    return jdbcTemplate.query("SELECT user_id, SUM(num) FROM vote_outbox WHERE rs_event_id IN ("
+            + placeholders(rsEventIds.size()) + ") GROUP BY user_id",
+        (rs, rowNum) -> new VoteTotal(rs.getInt(1), rs.getLong(2)), rsEventIds.toArray());
+  }
+
+  /** Votes queued by userId, summed per event. */
+  public List<VoteTotal> sumByEventOfUser(int userId) {
+    return jdbcTemplate.query("SELECT rs_event_id, SUM(num) FROM vote_outbox WHERE user_id = ? GROUP BY rs_event_id",
+        (rs, rowNum) -> new VoteTotal(rs.getInt(1), rs.getLong(2)), userId);
+  }
+
+  public List<VoteTotal> sumByEvent() {
+    return sum("rs_event_id");
+  }
+
+  public List<VoteTotal> sumByUser() {
+    return sum("user_id");
+  }
+
+  private void copyAll() {
+    while (transactionTemplate.execute(status -> copyBatch())) {
+      log.debug("Copied {} votes to their shards", COPY_BATCH_SIZE);
+    }
+  }
+
+  // Copies the oldest batch of queued votes and returns whether there may be more.
+  private boolean copyBatch() {
+    List<Long> outboxIds = new ArrayList<>();
+    List<Vote> votes = new ArrayList<>();
+    jdbcTemplate.query("SELECT id, local_date_time, num, user_id, rs_event_id FROM vote_outbox ORDER BY id LIMIT ?",
+        (RowCallbackHandler) rs -> {
+          Timestamp time = rs.getTimestamp("local_date_time");
+          outboxIds.add(rs.getLong("id"));
+          votes.add(new Vote(rs.getInt("user_id"), rs.getInt("rs_event_id"),
+              time == null ? null : time.toLocalDateTime(), rs.getInt("num")));
+        }, COPY_BATCH_SIZE);
+    if (votes.isEmpty()) {
+      return false;
+    }
+    voteShards.insert(outboxIds, votes);
+    jdbcTemplate.update("DELETE FROM vote_outbox WHERE id IN (" + placeholders(outboxIds.size()) + ")",
+        outboxIds.toArray());
+    return votes.size() == COPY_BATCH_SIZE;
+  }
+
+  // Runs work once the current transaction commits, or at once outside a transaction.
+  private void afterCommit(Runnable work) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      work.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+      @Override
+      public void afterCommit() {
+        work.run();
+      }
+    });
+  }
+
+  private List<VoteTotal> sum(String column) {
+    return jdbcTemplate.query("SELECT " + column + ", SUM(num) FROM vote_outbox GROUP BY " + column,
+        (rs, rowNum) -> new VoteTotal(rs.getInt(1), rs.getLong(2)));
+  }
+
+  private static String placeholders(int count) {
+    return String.join(", ", Collections.nCopies(count, "?"));
+  }
+}
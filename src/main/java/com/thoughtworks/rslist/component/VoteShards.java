@@ -0,0 +1,287 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.domain.VoteTotal;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Optional home of the vote rows outside the main database (rs.vote.shards.urls).
+ *
+ * <p>Every vote lives in the shard its rsEventId hashes to, so votes of one event, and the
+ * history of one user for one event, are read from a single shard. Queries over all events of a
+ * user ask every shard at once and merge the answers. Shards hold a plain vote table without
+ * foreign keys; rows reach it through {@link VoteOutbox} once the transaction that moves the
+ * counters in the main database has committed, and carry their outbox id under a unique key so a
+ * copy that is repeated is skipped. Adding a shard changes where most events belong: restart every instance with the
+ * longer list, then {@link #reshard()} moves the existing rows. With no urls configured the vote
+ * table of the main database is used and this component stays idle.
+ */
+@Slf4j
+@Component
+public class VoteShards {
+  private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS vote ("
+      + "id BIGINT AUTO_INCREMENT PRIMARY KEY, local_date_time TIMESTAMP(6) NULL, num INT NOT NULL, "
+      + "user_id INT NOT NULL, rs_event_id INT NOT NULL, outbox_id BIGINT NOT NULL, "
+      + "UNIQUE INDEX uk_vote_outbox (outbox_id), "
+      + "INDEX idx_vote_user_event_time (user_id, rs_event_id, local_date_time), "
+      + "INDEX idx_vote_user_time (user_id, local_date_time), "
+      + "INDEX idx_vote_event (rs_event_id))";
+  private static final String INSERT_VOTE =
+      "INSERT IGNORE INTO vote (local_date_time, num, user_id, rs_event_id, outbox_id) VALUES (?, ?, ?, ?, ?)";
+  private static final String SELECT_VOTE =
+      "SELECT id, user_id, rs_event_id, local_date_time, num, outbox_id FROM vote ";
+  private static final RowMapper<Vote> VOTE_MAPPER = (rs, rowNum) -> {
+    Timestamp time = rs.getTimestamp("local_date_time");
+    return new Vote(rs.getInt("user_id"), rs.getInt("rs_event_id"),
+        time == null ? null : time.toLocalDateTime(), rs.getInt("num"));
+  };
+  private static final RowMapper<ShardVote> SHARD_VOTE_MAPPER =
+      (rs, rowNum) -> new ShardVote(VOTE_MAPPER.mapRow(rs, rowNum), rs.getLong("id"), rs.getLong("outbox_id"));
+  // An event lives on one shard, so time, event and the shard's row id order a user's votes the
+  // same way on every page.
+  private static final Comparator<ShardVote> BY_TIME =
+      Comparator.comparing((ShardVote shardVote) -> shardVote.vote.getTime(),
+          Comparator.nullsFirst(Comparator.naturalOrder()))
+          .thenComparingInt(shardVote -> shardVote.vote.getRsEventId())
+          .thenComparingLong(shardVote -> shardVote.id);
+
+  private final List<JdbcTemplate> shards = new ArrayList<>();
+  private final List<HikariDataSource> owned = new ArrayList<>();
+  private final ExecutorService scatter;
+
+  @Autowired
+  public VoteShards(@Value("${rs.vote.shards.urls:}") String urls,
+                    @Value("${rs.vote.shards.username:}") String username,
+                    @Value("${rs.vote.shards.password:}") String password) {
+    for (String url : StringUtils.commaDelimitedListToStringArray(urls)) {
+      if (!url.trim().isEmpty()) {
+        owned.add(DataSourceBuilder.create().type(HikariDataSource.class)
+            .url(url.trim()).username(username).password(password).build());
+      }
+    }
+    this.scatter = open(new ArrayList<>(owned));
+  }
+
+  VoteShards(List<DataSource> dataSources) {
+    this.scatter = open(dataSources);
+  }
+
+  private ExecutorService open(List<? extends DataSource> dataSources) {
+    for (DataSource dataSource : dataSources) {
+      JdbcTemplate shard = new JdbcTemplate(dataSource);
+      shard.execute(CREATE_TABLE);
+      shards.add(shard);
+    }
+    if (shards.isEmpty()) {
+      return null;
+    }
+    AtomicInteger count = new AtomicInteger();
+    return Executors.newFixedThreadPool(shards.size(), runnable -> {
+      Thread thread = new Thread(runnable, "vote-shard-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    if (scatter != null) {
+      scatter.shutdown();
+      scatter.awaitTermination(10, TimeUnit.SECONDS);
+    }
+    owned.forEach(HikariDataSource::close);
+  }
+
+  public boolean isEnabled() {
+    return !shards.isEmpty();
+  }
+
+  public int shardOf(int rsEventId) {
+    int hash = rsEventId * 0x9E3779B9;
+    return Math.floorMod(hash ^ (hash >>> 16), shards.size());
+  }
+
+  /**
+   * Writes the votes, taken from the outbox under outboxIds, with one batch per shard; shards that
+   * already succeeded keep their rows, and votes already written under their outbox id are skipped.
+   */
+  public void insert(List<Long> outboxIds, List<Vote> votes) {
+    Map<Integer, List<ShardVote>> byShard = new LinkedHashMap<>();
+    for (int i = 0; i < votes.size(); i++) {
+      byShard.computeIfAbsent(shardOf(votes.get(i).getRsEventId()), shard -> new ArrayList<>())
+          .add(new ShardVote(votes.get(i), 0, outboxIds.get(i)));
+    }
+    byShard.forEach((shard, shardVotes) -> insert(shards.get(shard), shardVotes));
+  }
+
+  public List<Vote> findByUserAndEvent(int userId, int rsEventId, int offset, int limit) {
+    return shards.get(shardOf(rsEventId)).query(
+        SELECT_VOTE + "WHERE user_id = ? AND rs_event_id = ? ORDER BY local_date_time, id LIMIT ? OFFSET ?",
+        VOTE_MAPPER, userId, rsEventId, limit, offset);
+  }
+
+  /** One page of a user's votes over all events, oldest first, gathered from every shard. */
+  public List<Vote> findByUser(int userId, int offset, int limit) {
+    List<ShardVote> votes = new ArrayList<>();
+    gather(shard -> shard.query(SELECT_VOTE + "WHERE user_id = ? ORDER BY local_date_time, rs_event_id, id LIMIT ?",
+        SHARD_VOTE_MAPPER, userId, offset + limit)).forEach(votes::addAll);
+    votes.sort(BY_TIME);
+    return votes.subList(Math.min(offset, votes.size()), Math.min(offset + limit, votes.size())).stream()
+        .map(shardVote -> shardVote.vote)
+        .collect(Collectors.toList());
+  }
+
+  public List<VoteTotal> sumByEvent() {
+    return sum("rs_event_id");
+  }
+
+  public List<VoteTotal> sumByUser() {
+    return sum("user_id");
+  }
+
+  /** Votes cast on rsEventIds, summed per voter over the shards those events live on. */
+  public List<VoteTotal> sumByUserOnEvents(List<Integer> rsEventIds) {
+    Map<Integer, Long> totals = new LinkedHashMap<>();
+    byShard(rsEventIds).forEach((shard, ids) -> shards.get(shard).query(
+        "SELECT user_id, SUM(num) FROM vote WHERE rs_event_id IN (" + placeholders(ids.size()) + ") GROUP BY user_id",
+        (rs, rowNum) -> new VoteTotal(rs.getInt(1), rs.getLong(2)), ids.toArray())
+        .forEach(total -> totals.merge(total.getId(), total.getVotes(), Long::sum)));
+    return toVoteTotals(totals);
+  }
+
+  /** Votes cast by userId, summed per event, gathered from every shard. */
+  public List<VoteTotal> sumByEventOfUser(int userId) {
+    List<VoteTotal> totals = new ArrayList<>();
+    gather(shard -> shard.query("SELECT rs_event_id, SUM(num) FROM vote WHERE user_id = ? GROUP BY rs_event_id",
+        (rs, rowNum) -> new VoteTotal(rs.getInt(1), rs.getLong(2)), userId)).forEach(totals::addAll);
+    return totals;
+  }
+
+  public void deleteByEvents(List<Integer> rsEventIds) {
+    byShard(rsEventIds).forEach((shard, ids) -> shards.get(shard).update(
+        "DELETE FROM vote WHERE rs_event_id IN (" + placeholders(ids.size()) + ")", ids.toArray()));
+  }
+
+  public void deleteByUserOnEvents(int userId, List<Integer> rsEventIds) {
+    byShard(rsEventIds).forEach((shard, ids) -> {
+      List<Object> args = new ArrayList<>(ids);
+      args.add(0, userId);
+      shards.get(shard).update("DELETE FROM vote WHERE user_id = ? AND rs_event_id IN ("
+          + placeholders(ids.size()) + ")", args.toArray());
+    });
+  }
+
+  /**
+   * Moves every vote that is not on the shard its rsEventId hashes to now, one event at a time,
+   * and returns how many rows moved. New votes already go to the new shard, so it can run while
+   * voting goes on; an event's history is incomplete until its rows have moved. A crash between
+   * copying and deleting an event leaves its rows on both shards until the next run, whose copy is
+   * skipped by outbox id.
+   */
+  public int reshard() {
+    int moved = 0;
+    for (int source = 0; source < shards.size(); source++) {
+      JdbcTemplate from = shards.get(source);
+      for (Integer rsEventId : from.queryForList("SELECT DISTINCT rs_event_id FROM vote", Integer.class)) {
+        int target = shardOf(rsEventId);
+        if (target == source) {
+          continue;
+        }
+        List<ShardVote> votes =
+            from.query(SELECT_VOTE + "WHERE rs_event_id = ? ORDER BY id", SHARD_VOTE_MAPPER, rsEventId);
+        insert(shards.get(target), votes);
+        from.update("DELETE FROM vote WHERE rs_event_id = ?", rsEventId);
+        moved += votes.size();
+      }
+    }
+    log.info("Moved {} votes between {} shards", moved, shards.size());
+    return moved;
+  }
+
+  private List<VoteTotal> sum(String column) {
+    Map<Integer, Long> totals = new LinkedHashMap<>();
+    gather(shard -> shard.query("SELECT " + column + ", SUM(num) FROM vote GROUP BY " + column,
+        (rs, rowNum) -> new VoteTotal(rs.getInt(1), rs.getLong(2))))
+        .forEach(shardTotals -> shardTotals.forEach(
+            total -> totals.merge(total.getId(), total.getVotes(), Long::sum)));
+    return toVoteTotals(totals);
+  }
+
+  private Map<Integer, List<Integer>> byShard(List<Integer> rsEventIds) {
+    return rsEventIds.stream().collect(Collectors.groupingBy(this::shardOf, LinkedHashMap::new, Collectors.toList()));
+  }
+
+  private static List<VoteTotal> toVoteTotals(Map<Integer, Long> totals) {
+    return totals.entrySet().stream()
+        .map(entry -> new VoteTotal(entry.getKey(), entry.getValue()))
+        .collect(Collectors.toList());
+  }
+
+  private static String placeholders(int count) {
+    return String.join(", ", Collections.nCopies(count, "?"));
+  }
+
+  // Runs query on every shard in parallel; results come back in shard order.
+  private <T> List<T> gather(Function<JdbcTemplate, T> query) {
+    List<CompletableFuture<T>> futures = shards.stream()
+        .map(shard -> CompletableFuture.supplyAsync(() -> query.apply(shard), scatter))
+        .collect(Collectors.toList());
+    try {
+      return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private static void insert(JdbcTemplate shard, List<ShardVote> votes) {
+    shard.batchUpdate(INSERT_VOTE, votes, votes.size(), (ps, shardVote) -> {
+      Vote vote = shardVote.vote;
+      ps.setTimestamp(1, vote.getTime() == null ? null : Timestamp.valueOf(vote.getTime()));
+      ps.setInt(2, vote.getVoteNum());
+      ps.setInt(3, vote.getUserId());
+      ps.setInt(4, vote.getRsEventId());
+      ps.setLong(5, shardVote.outboxId);
+    });
+  }
+
+  private static class ShardVote {
+    private final Vote vote;
+    private final long id;
+    private final long outboxId;
+
+    private ShardVote(Vote vote, long id, long outboxId) {
+      this.vote = vote;
+      this.id = id;
+      this.outboxId = outboxId;
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.exception.WriteRejectedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the write endpoints (vote, buy, register) off the servlet threads when
+ * rs.write.async.enabled is set.
+ *
+ * <p>The pool has a fixed number of threads, sized below the connection pool so writes can never
+ * hold every connection: out of spring.datasource.hikari.maximum-pool-size it leaves one for reads
+ * and one for each background thread that is running (rank-writer, user-deleter, vote-snapshot,
+ * vote-batcher, trade-journal-loader, vote-outbox), and takes two per write with vote shards, whose
+ * copy after commit opens a second transaction. rs.write.async.threads is lowered to what is left,
+ * which is also the size when it is not set. The queue is bounded; once threads and queue are full
+ * a write fails at once with {@link WriteRejectedException} (503) instead of waiting. Servlet threads are handed back while a
+ * write runs, so a burst of slow writes no longer starves /rs/list readers. When async is off the
+ * work runs inline on the calling thread.
+ */
+@Slf4j
+@Component
+public class WriteExecutor {
+  private final boolean enabled;
+  private final ThreadPoolExecutor executor;
+  private final AtomicInteger rejected = new AtomicInteger();
+
+  @Autowired
+  public WriteExecutor(@Value("${rs.write.async.enabled:false}") boolean enabled,
+                       @Value("${rs.write.async.threads:0}") int threads,
+                       @Value("${rs.write.async.queue-capacity:100}") int queueCapacity,
+                       @Value("${spring.datasource.hikari.maximum-pool-size:10}") int maxPoolSize,
+                       @Value("${rs.vote.ledger.snapshot-interval-ms:0}") long snapshotIntervalMillis,
+                       @Value("${rs.vote.batching.enabled:false}") boolean batching,
+                       @Value("${rs.rank.journal.enabled:false}") boolean journal,
+                       @Value("${rs.vote.shards.urls:}") String shardUrls) {
+    this(enabled, threads(enabled, threads, maxPoolSize, snapshotIntervalMillis > 0, batching, journal,
+        !shardUrls.trim().isEmpty()), queueCapacity);
+  }
+
+  public WriteExecutor(boolean enabled, int threads, int queueCapacity) {
+    this.enabled = enabled;
+    AtomicInteger count = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+          Thread thread = new Thread(runnable, "rs-write-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  // What is left of the connection pool for writes, one connection kept for reads.
+  private static int threads(boolean enabled, int configured, int maxPoolSize, boolean snapshots, boolean batching,
+                             boolean journal, boolean shards) {
+    // rank-writer and user-deleter always run; the others only when switched on.
+    int background = 2 + (snapshots ? 1 : 0) + (batching ? 1 : 0) + (journal ? 1 : 0) + (shards ? 1 : 0);
+    int available = Math.max(1, (maxPoolSize - 1 - background) / (shards ? 2 : 1));
+    if (configured <= 0) {
+      return available;
+    }
+    if (enabled && configured > available) {
+      log.warn("rs.write.async.threads lowered from {} to {} to fit spring.datasource.hikari.maximum-pool-size {}",
+          configured, available, maxPoolSize);
+    }
+    return Math.min(configured, available);
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  public <T> CompletableFuture<T> submit(Supplier<T> write) {
+    if (!enabled) {
+      return CompletableFuture.completedFuture(write.get());
+    }
+    try {
+      return CompletableFuture.supplyAsync(ReadRouting.inheritContext(write), executor);
+    } catch (RejectedExecutionException e) {
+      rejected.incrementAndGet();
+      throw new WriteRejectedException("Too many writes in progress, please retry later");
+    }
+  }
+
+  public int getThreads() {
+    return executor.getMaximumPoolSize();
+  }
+
+  public int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  public int getRejectedCount() {
+    return rejected.get();
+  }
+}
@@ -0,0 +1,13 @@
+package com.thoughtworks.rslist.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class RsEventPage {
+  private List<RsEvent> rsEvents;
+  private String nextCursor;
+}
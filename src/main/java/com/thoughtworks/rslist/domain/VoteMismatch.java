@@ -0,0 +1,22 @@
+package com.thoughtworks.rslist.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class VoteMismatch {
+    public enum Type {
+        EVENT,
+        USER
+    }
+
+    private Type type;
+    private int id;
+    private long expected;
+    private long actual;
+}
@@ -6,13 +6,15 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 
 @Entity
 @Data
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "rank_record")
+@Table(name = "rank_record", uniqueConstraints = @UniqueConstraint(name = "uk_rank_record_journal",
+    columnNames = {"journal_segment", "journal_index"}))
 public class RankRecordDto {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -20,4 +22,8 @@ public class RankRecordDto {
     private Integer rankPos;
     private Integer price;
     private Integer rsEventId;
+    private LocalDateTime tradedAt;
+    // Where a record loaded from the trade journal sat in it; null for records saved directly.
+    private Long journalSegment;
+    private Integer journalIndex;
 }
@@ -12,7 +12,7 @@ import javax.persistence.*;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "rs_event")
+@Table(name = "rs_event", indexes = @Index(name = "idx_rs_event_vote_num_id", columnList = "vote_num, id"))
 public class RsEventDto {
   @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
   private int id;
@@ -7,7 +7,9 @@ import lombok.NoArgsConstructor;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
@@ -18,9 +20,11 @@ import java.time.LocalDateTime;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(name = "vote")
+@Table(name = "vote", indexes = {
+    @Index(name = "idx_vote_user_event_time", columnList = "user_id, rs_event_id, local_date_time"),
+    @Index(name = "idx_vote_user_time", columnList = "user_id, local_date_time")})
 public class VoteDto {
-  @Id @GeneratedValue private int id;
+  @Id @GeneratedValue(strategy = GenerationType.IDENTITY) private int id;
 
   private LocalDateTime localDateTime;
 
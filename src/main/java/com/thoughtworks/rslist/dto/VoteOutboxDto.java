@@ -0,0 +1,30 @@
+package com.thoughtworks.rslist.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/** Votes committed in the main database but not yet copied to their shard; see VoteOutbox. */
+@Entity
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "vote_outbox")
+public class VoteOutboxDto {
+  @Id @GeneratedValue(strategy = GenerationType.IDENTITY) private long id;
+
+  private LocalDateTime localDateTime;
+
+  private int num;
+  private int userId;
+  private int rsEventId;
+}
@@ -0,0 +1,29 @@
+package com.thoughtworks.rslist.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Where the compact vote totals stand: every vote with id up to lastVoteId is folded into
+ * event_vote_total and user_vote_total. observedVoteId is the highest vote id seen when the
+ * snapshot was taken; it is folded in by the next snapshot, once those votes have surely committed.
+ */
+@Entity
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "vote_snapshot")
+public class VoteSnapshotDto {
+  @Id private int id;
+  private int lastVoteId;
+  private int observedVoteId;
+  private LocalDateTime takenAt;
+}
@@ -0,0 +1,15 @@
+package com.thoughtworks.rslist.exception;
+
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    private String errorMessage;
+
+    public IdempotencyKeyReusedException(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    @Override
+    public String getMessage() {
+        return errorMessage;
+    }
+}
@@ -0,0 +1,21 @@
+package com.thoughtworks.rslist.exception;
+
+public class RateLimitedException extends RuntimeException {
+
+    private String errorMessage;
+    private long retryAfterSeconds;
+
+    public RateLimitedException(String errorMessage, long retryAfterSeconds) {
+        this.errorMessage = errorMessage;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    @Override
+    public String getMessage() {
+        return errorMessage;
+    }
+}
@@ -0,0 +1,15 @@
+package com.thoughtworks.rslist.exception;
+
+public class VoteQueueFullException extends RuntimeException {
+
+    private String errorMessage;
+
+    public VoteQueueFullException(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    @Override
+    public String getMessage() {
+        return errorMessage;
+    }
+}
@@ -0,0 +1,15 @@
+package com.thoughtworks.rslist.exception;
+
+public class WriteRejectedException extends RuntimeException {
+
+    private String errorMessage;
+
+    public WriteRejectedException(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    @Override
+    public String getMessage() {
+        return errorMessage;
+    }
+}
@@ -0,0 +1,25 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.dto.EventVoteTotalDto;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface EventVoteTotalRepository extends CrudRepository<EventVoteTotalDto, Integer> {
+    @Override
+    List<EventVoteTotalDto> findAll();
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE EventVoteTotalDto t SET t.votes = t.votes - :votes WHERE t.rsEventId = :rsEventId")
+    int subtractVotes(@Param("rsEventId") int rsEventId, @Param("votes") long votes);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM EventVoteTotalDto t WHERE t.rsEventId IN :rsEventIds")
+    int deleteByRsEventIds(@Param("rsEventIds") List<Integer> rsEventIds);
+}
@@ -1,9 +1,11 @@
 package com.thoughtworks.rslist.repository;
 
 import com.thoughtworks.rslist.dto.RankDto;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -17,4 +19,9 @@ public interface RankDtoRepository extends CrudRepository<RankDto, Integer> {
 
     @Query("DELETE FROM RankDto rankDto WHERE rankDto.rankPos = :rankPos")
     void deleteByRankPos(@Param("rankPos") int rankPos);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RankDto rankDto WHERE rankDto.rsEventId IN :rsEventIds")
+    int deleteByRsEventIds(@Param("rsEventIds") List<Integer> rsEventIds);
 }
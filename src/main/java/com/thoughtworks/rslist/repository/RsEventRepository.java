@@ -1,14 +1,59 @@
 package com.thoughtworks.rslist.repository;
 
+import com.thoughtworks.rslist.domain.RsEvent;
 import com.thoughtworks.rslist.dto.RsEventDto;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 public interface RsEventRepository extends CrudRepository<RsEventDto, Integer> {
   List<RsEventDto> findAll();
 
   @Transactional
   void deleteAllByUserId(int userId);
+
+  @Modifying
+  @Transactional
+  @Query("UPDATE RsEventDto e SET e.voteNum = e.voteNum + :votes WHERE e.id = :id")
+  int addVotes(@Param("id") int id, @Param("votes") int votes);
+
+  @Transactional(readOnly = true)
+  @Query(value = "SELECT * FROM rs_event e "
+      + "WHERE NOT EXISTS (SELECT 1 FROM rank_pos r WHERE r.rs_event_id = e.id) "
+      + "ORDER BY e.vote_num DESC, e.id ASC LIMIT :limit OFFSET :offset", nativeQuery = true)
+  List<RsEventDto> findUnpaidPage(@Param("offset") int offset, @Param("limit") int limit);
+
+  @Transactional(readOnly = true)
+  @Query(value = "SELECT * FROM rs_event e "
+      + "WHERE (e.vote_num < :voteNum OR (e.vote_num = :voteNum AND e.id > :id)) "
+      + "AND NOT EXISTS (SELECT 1 FROM rank_pos r WHERE r.rs_event_id = e.id) "
+      + "ORDER BY e.vote_num DESC, e.id ASC LIMIT :limit", nativeQuery = true)
+  List<RsEventDto> findUnpaidPageAfter(
+      @Param("voteNum") int voteNum, @Param("id") int id, @Param("limit") int limit);
+
+  @Transactional(readOnly = true)
+  @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READONLY, value = "true")})
+  @Query("SELECT new com.thoughtworks.rslist.domain.RsEvent(e.eventName, e.keyword, e.voteNum, e.id) "
+      + "FROM RsEventDto e WHERE NOT EXISTS (SELECT r FROM RankDto r WHERE r.rsEventId = e.id) "
+      + "ORDER BY e.voteNum DESC, e.id ASC")
+  Stream<RsEvent> streamUnpaidRanking();
+
+  @Query("SELECT e.id FROM RsEventDto e WHERE e.user.id = :userId ORDER BY e.id")
+  List<Integer> findIdsByUserId(@Param("userId") int userId, Pageable pageable);
+
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM RsEventDto e WHERE e.id IN :ids")
+  int deleteAllByIds(@Param("ids") List<Integer> ids);
 }
@@ -0,0 +1,29 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.domain.VoteTotal;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/** Vote writes and history reads that go to the vote shards when they are configured. */
+public interface ShardedVoteRepository {
+  int insertVote(LocalDateTime time, int num, int userId, int rsEventId);
+
+  void insertVotes(List<Vote> votes);
+
+  List<Vote> findVoteRecords(int userId, int rsEventId, Pageable pageable);
+
+  List<Vote> findVoteRecordsByUser(int userId, Pageable pageable);
+
+  /** Votes cast on rsEventIds, summed per voter. */
+  List<VoteTotal> sumVotesOnEventsByUser(List<Integer> rsEventIds);
+
+  /** Votes cast by userId, summed per event. */
+  List<VoteTotal> sumVotesOfUserByEvent(int userId);
+
+  void deleteVotesOnEvents(List<Integer> rsEventIds);
+
+  void deleteVotesOfUserOnEvents(int userId, List<Integer> rsEventIds);
+}
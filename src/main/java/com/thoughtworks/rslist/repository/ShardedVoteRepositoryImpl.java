@@ -0,0 +1,151 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.component.VoteOutbox;
+import com.thoughtworks.rslist.component.VoteShards;
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.domain.VoteTotal;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class ShardedVoteRepositoryImpl implements ShardedVoteRepository {
+  private static final String INSERT_VOTE =
+      "INSERT INTO vote (local_date_time, num, user_id, rs_event_id) VALUES (?, ?, ?, ?)";
+  private static final String SELECT_VOTE =
+      "SELECT new com.thoughtworks.rslist.domain.Vote(v.user.id, v.rsEvent.id, v.localDateTime, v.num) FROM VoteDto v ";
+
+  @PersistenceContext EntityManager entityManager;
+  final JdbcTemplate jdbcTemplate;
+  final VoteShards voteShards;
+  final VoteOutbox voteOutbox;
+
+  public ShardedVoteRepositoryImpl(JdbcTemplate jdbcTemplate, VoteShards voteShards, VoteOutbox voteOutbox) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.voteShards = voteShards;
+    this.voteOutbox = voteOutbox;
+  }
+
+  @Override
+  @Transactional
+  public int insertVote(LocalDateTime time, int num, int userId, int rsEventId) {
+    if (voteShards.isEnabled()) {
+      voteOutbox.add(Collections.singletonList(new Vote(userId, rsEventId, time, num)));
+      return 1;
+    }
+    return jdbcTemplate.update(INSERT_VOTE, time == null ? null : Timestamp.valueOf(time), num, userId, rsEventId);
+  }
+
+  @Override
+  @Transactional
+  public void insertVotes(List<Vote> votes) {
+    if (voteShards.isEnabled()) {
+      voteOutbox.add(votes);
+      return;
+    }
+    jdbcTemplate.batchUpdate(INSERT_VOTE, votes, votes.size(), (ps, vote) -> {
+      ps.setTimestamp(1, vote.getTime() == null ? null : Timestamp.valueOf(vote.getTime()));
+      ps.setInt(2, vote.getVoteNum());
+      ps.setInt(3, vote.getUserId());
+      ps.setInt(4, vote.getRsEventId());
+    });
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public List<Vote> findVoteRecords(int userId, int rsEventId, Pageable pageable) {
+    if (voteShards.isEnabled()) {
+      return voteShards.findByUserAndEvent(userId, rsEventId, (int) pageable.getOffset(), pageable.getPageSize());
+    }
+    return entityManager.createQuery(SELECT_VOTE
+        + "WHERE v.user.id = :userId AND v.rsEvent.id = :rsEventId ORDER BY v.localDateTime, v.id", Vote.class)
+        .setParameter("userId", userId)
+        .setParameter("rsEventId", rsEventId)
+        .setFirstResult((int) pageable.getOffset())
+        .setMaxResults(pageable.getPageSize())
+        .getResultList();
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public List<Vote> findVoteRecordsByUser(int userId, Pageable pageable) {
+    if (voteShards.isEnabled()) {
+      return voteShards.findByUser(userId, (int) pageable.getOffset(), pageable.getPageSize());
+    }
+    return entityManager.createQuery(SELECT_VOTE
+        + "WHERE v.user.id = :userId ORDER BY v.localDateTime, v.id", Vote.class)
+        .setParameter("userId", userId)
+        .setFirstResult((int) pageable.getOffset())
+        .setMaxResults(pageable.getPageSize())
+        .getResultList();
+  }
+
+  @Override
+  @Transactional
+  public List<VoteTotal> sumVotesOnEventsByUser(List<Integer> rsEventIds) {
+    if (voteShards.isEnabled()) {
+      return voteOutbox.paused(() -> merge(voteShards.sumByUserOnEvents(rsEventIds),
+          voteOutbox.sumByUserOnEvents(rsEventIds)));
+    }
+    return entityManager.createQuery("SELECT new com.thoughtworks.rslist.domain.VoteTotal(v.user.id, SUM(v.num)) "
+        + "FROM VoteDto v WHERE v.rsEvent.id IN :rsEventIds GROUP BY v.user.id", VoteTotal.class)
+        .setParameter("rsEventIds", rsEventIds)
+        .getResultList();
+  }
+
+  @Override
+  @Transactional
+  public List<VoteTotal> sumVotesOfUserByEvent(int userId) {
+    if (voteShards.isEnabled()) {
+      return voteOutbox.paused(() -> merge(voteShards.sumByEventOfUser(userId),
+          voteOutbox.sumByEventOfUser(userId)));
+    }
+    return entityManager.createQuery("SELECT new com.thoughtworks.rslist.domain.VoteTotal(v.rsEvent.id, SUM(v.num)) "
+        + "FROM VoteDto v WHERE v.user.id = :userId GROUP BY v.rsEvent.id", VoteTotal.class)
+        .setParameter("userId", userId)
+        .getResultList();
+  }
+
+  @Override
+  @Transactional
+  public void deleteVotesOnEvents(List<Integer> rsEventIds) {
+    if (voteShards.isEnabled()) {
+      voteOutbox.deleteByEvents(rsEventIds);
+      return;
+    }
+    entityManager.createQuery("DELETE FROM VoteDto v WHERE v.rsEvent.id IN :rsEventIds")
+        .setParameter("rsEventIds", rsEventIds)
+        .executeUpdate();
+  }
+
+  @Override
+  @Transactional
+  public void deleteVotesOfUserOnEvents(int userId, List<Integer> rsEventIds) {
+    if (voteShards.isEnabled()) {
+      voteOutbox.deleteByUserOnEvents(userId, rsEventIds);
+      return;
+    }
+    entityManager.createQuery("DELETE FROM VoteDto v WHERE v.user.id = :userId AND v.rsEvent.id IN :rsEventIds")
+        .setParameter("userId", userId)
+        .setParameter("rsEventIds", rsEventIds)
+        .executeUpdate();
+  }
+
+  private static List<VoteTotal> merge(List<VoteTotal> copied, List<VoteTotal> queued) {
+    Map<Integer, Long> totals = new LinkedHashMap<>();
+    copied.forEach(votes -> totals.merge(votes.getId(), votes.getVotes(), Long::sum));
+    queued.forEach(votes -> totals.merge(votes.getId(), votes.getVotes(), Long::sum));
+    return totals.entrySet().stream()
+        .map(entry -> new VoteTotal(entry.getKey(), entry.getValue()))
+        .collect(Collectors.toList());
+  }
+}
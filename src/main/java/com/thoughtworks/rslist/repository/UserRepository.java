@@ -1,10 +1,30 @@
 package com.thoughtworks.rslist.repository;
 
 import com.thoughtworks.rslist.dto.UserDto;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
 public interface UserRepository extends CrudRepository<UserDto, Integer> {
     List<UserDto> findAll();
+
+    /** The highest user id, or null when there are no users. */
+    @Query("SELECT MAX(u.id) FROM UserDto u")
+    Integer findMaxId();
+
+    /** Takes votes from the user's budget if enough is left; returns 0 when it is not. */
+    @Modifying
+    @Transactional
+    @Query("UPDATE UserDto u SET u.voteNum = u.voteNum - :votes WHERE u.id = :id AND u.voteNum >= :votes")
+    int spendVotes(@Param("id") int id, @Param("votes") int votes);
+
+    /** Deletes only the user row, skipping the cascade to rsEventDtos. */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UserDto u WHERE u.id = :id")
+    int deleteRowById(@Param("id") int id);
 }
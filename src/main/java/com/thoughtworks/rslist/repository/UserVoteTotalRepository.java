@@ -0,0 +1,25 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.dto.UserVoteTotalDto;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface UserVoteTotalRepository extends CrudRepository<UserVoteTotalDto, Integer> {
+    @Override
+    List<UserVoteTotalDto> findAll();
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE UserVoteTotalDto t SET t.spent = t.spent - :spent WHERE t.userId = :userId")
+    int subtractSpent(@Param("userId") int userId, @Param("spent") long spent);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UserVoteTotalDto t WHERE t.userId = :userId")
+    int deleteByUserId(@Param("userId") int userId);
+}
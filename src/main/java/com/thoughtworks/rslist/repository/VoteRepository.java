@@ -1,12 +1,33 @@
 package com.thoughtworks.rslist.repository;
 
+import com.thoughtworks.rslist.domain.VoteTotal;
 import com.thoughtworks.rslist.dto.VoteDto;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
-public interface VoteRepository extends PagingAndSortingRepository<VoteDto, Integer> {
+public interface VoteRepository extends PagingAndSortingRepository<VoteDto, Integer>, ShardedVoteRepository {
     List<VoteDto> findAll();
-    List<VoteDto> findAllByUserIdAndRsEventId(int userId, int rsEventId, Pageable pageable);
+
+    @Query("SELECT COALESCE(MAX(v.id), 0) FROM VoteDto v")
+    int findMaxId();
+
+    @Query("SELECT new com.thoughtworks.rslist.domain.VoteTotal(v.rsEvent.id, SUM(v.num)) "
+        + "FROM VoteDto v WHERE v.id > :from AND v.id <= :to GROUP BY v.rsEvent.id")
+    List<VoteTotal> sumByEvent(@Param("from") int from, @Param("to") int to);
+
+    @Query("SELECT new com.thoughtworks.rslist.domain.VoteTotal(v.user.id, SUM(v.num)) "
+        + "FROM VoteDto v WHERE v.id > :from AND v.id <= :to GROUP BY v.user.id")
+    List<VoteTotal> sumByUser(@Param("from") int from, @Param("to") int to);
+
+    @Query("SELECT new com.thoughtworks.rslist.domain.VoteTotal(v.user.id, SUM(v.num)) "
+        + "FROM VoteDto v WHERE v.rsEvent.id IN :rsEventIds AND v.id <= :to GROUP BY v.user.id")
+    List<VoteTotal> sumByUserOnEvents(@Param("rsEventIds") List<Integer> rsEventIds, @Param("to") int to);
+
+    @Query("SELECT new com.thoughtworks.rslist.domain.VoteTotal(v.rsEvent.id, SUM(v.num)) FROM VoteDto v "
+        + "WHERE v.user.id = :userId AND v.rsEvent.id IN :rsEventIds AND v.id <= :to GROUP BY v.rsEvent.id")
+    List<VoteTotal> sumByEventOfUser(
+        @Param("userId") int userId, @Param("rsEventIds") List<Integer> rsEventIds, @Param("to") int to);
 }
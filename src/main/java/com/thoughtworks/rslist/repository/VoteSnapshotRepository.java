@@ -0,0 +1,11 @@
+package com.thoughtworks.rslist.repository;
+
+import com.thoughtworks.rslist.dto.VoteSnapshotDto;
+import org.springframework.data.repository.CrudRepository;
+
+import java.util.List;
+
+public interface VoteSnapshotRepository extends CrudRepository<VoteSnapshotDto, Integer> {
+    @Override
+    List<VoteSnapshotDto> findAll();
+}
@@ -0,0 +1,185 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.component.ReadRouting;
+import com.thoughtworks.rslist.component.RsEventLeaderboard;
+import com.thoughtworks.rslist.component.VoteBudgets;
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.domain.VoteResult;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Applies many votes, across any users and events, in one pass.
+ *
+ * <p>Users and events are looked up with one findAllById each and every vote is checked against
+ * the running budget of its user. The accepted votes are then written in one transaction: one
+ * guarded debit per user, one JDBC batch of vote rows and one summed credit per event. By default
+ * every vote gets its own result and rejected votes do not hold back the others; with allOrNothing
+ * a single rejection leaves the database untouched. The debits are passed on to
+ * {@link VoteBudgets} once committed.
+ */
+@Service
+public class BulkVoteService {
+  static final String USER_NOT_FOUND = "user not found";
+  static final String EVENT_NOT_FOUND = "event not found";
+  static final String INVALID_VOTE_NUM = "invalid vote number";
+  static final String NOT_ENOUGH_VOTES = "not enough votes";
+  static final String ABORTED = "aborted, another vote in the batch was rejected";
+
+  private static final String DEBIT_USER =
+      "UPDATE user SET vote_num = vote_num - ? WHERE id = ? AND vote_num >= ?";
+  private static final String CREDIT_EVENT = "UPDATE rs_event SET vote_num = vote_num + ? WHERE id = ?";
+
+  final UserRepository userRepository;
+  final RsEventRepository rsEventRepository;
+  final VoteRepository voteRepository;
+  final RsEventLeaderboard rsEventLeaderboard;
+  final VoteBudgets voteBudgets;
+  final ObjectProvider<ReadRouting> readRouting;
+  final JdbcTemplate jdbcTemplate;
+  final TransactionTemplate transactionTemplate;
+  final int maxSize;
+
+  public BulkVoteService(UserRepository userRepository, RsEventRepository rsEventRepository,
+                         VoteRepository voteRepository, RsEventLeaderboard rsEventLeaderboard,
+                         VoteBudgets voteBudgets, ObjectProvider<ReadRouting> readRouting,
+                         JdbcTemplate jdbcTemplate,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${rs.vote.bulk.max-size:1000}") int maxSize) {
+    this.userRepository = userRepository;
+    this.rsEventRepository = rsEventRepository;
+    this.voteRepository = voteRepository;
+    this.rsEventLeaderboard = rsEventLeaderboard;
+    this.voteBudgets = voteBudgets;
+    this.readRouting = readRouting;
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.maxSize = maxSize;
+  }
+
+  /** Returns one result per vote, in the order the votes were given. */
+  public List<VoteResult> voteAll(List<Vote> votes, boolean allOrNothing) {
+    if (votes.size() > maxSize) {
+      throw new RequestNotValidException("too many votes, at most " + maxSize + " per request");
+    }
+    List<VoteResult> results = validate(votes);
+    if (allOrNothing && results.stream().anyMatch(result -> result.getError() != null)) {
+      return abort(results);
+    }
+    Map<Integer, Integer> credits;
+    try {
+      credits = transactionTemplate.execute(status -> write(votes, results, allOrNothing));
+    } catch (BudgetChangedException e) {
+      return abort(results);
+    }
+    credits.forEach(rsEventLeaderboard::addVotes);
+    results.stream().filter(VoteResult::isAccepted)
+        .forEach(result -> voteBudgets.spend(result.getUserId(), result.getVoteNum()));
+    readRouting.ifAvailable(routing -> results.stream().filter(VoteResult::isAccepted)
+        .forEach(result -> routing.recordWrite(result.getUserId())));
+    return results;
+  }
+
+  private List<VoteResult> validate(List<Vote> votes) {
+    Map<Integer, Integer> budgets = new HashMap<>();
+    userRepository.findAllById(votes.stream().map(Vote::getUserId).collect(Collectors.toSet()))
+        .forEach(userDto -> budgets.put(userDto.getId(), userDto.getVoteNum()));
+    Set<Integer> rsEventIds = new HashSet<>();
+    rsEventRepository.findAllById(votes.stream().map(Vote::getRsEventId).collect(Collectors.toSet()))
+        .forEach(rsEventDto -> rsEventIds.add(rsEventDto.getId()));
+
+    List<VoteResult> results = new ArrayList<>(votes.size());
+    for (Vote vote : votes) {
+      String error = null;
+      Integer budget = budgets.get(vote.getUserId());
+      if (budget == null) {
+        error = USER_NOT_FOUND;
+      } else if (!rsEventIds.contains(vote.getRsEventId())) {
+        error = EVENT_NOT_FOUND;
+      } else if (vote.getVoteNum() <= 0) {
+        error = INVALID_VOTE_NUM;
+      } else if (vote.getVoteNum() > budget) {
+        error = NOT_ENOUGH_VOTES;
+      } else {
+        budgets.put(vote.getUserId(), budget - vote.getVoteNum());
+      }
+      results.add(VoteResult.builder()
+          .userId(vote.getUserId())
+          .rsEventId(vote.getRsEventId())
+          .voteNum(vote.getVoteNum())
+          .accepted(error == null)
+          .error(error)
+          .build());
+    }
+    return results;
+  }
+
+  // Budgets may have moved since they were read, so each debit is guarded; the votes of a user
+  // whose debit no longer fits are rejected (or, with allOrNothing, the whole batch is).
+  private Map<Integer, Integer> write(List<Vote> votes, List<VoteResult> results, boolean allOrNothing) {
+    Map<Integer, Integer> debits = new LinkedHashMap<>();
+    results.stream().filter(VoteResult::isAccepted)
+        .forEach(result -> debits.merge(result.getUserId(), result.getVoteNum(), Integer::sum));
+    if (debits.isEmpty()) {
+      return debits;
+    }
+    List<Integer> userIds = new ArrayList<>(debits.keySet());
+    int[] debited = jdbcTemplate.batchUpdate(DEBIT_USER, userIds.stream()
+        .map(userId -> new Object[] {debits.get(userId), userId, debits.get(userId)})
+        .collect(Collectors.toList()));
+    Set<Integer> overspent = new HashSet<>();
+    for (int i = 0; i < debited.length; i++) {
+      if (debited[i] == 0) {
+        overspent.add(userIds.get(i));
+      }
+    }
+    if (!overspent.isEmpty() && allOrNothing) {
+      throw new BudgetChangedException();
+    }
+    List<Vote> accepted = new ArrayList<>();
+    for (int i = 0; i < results.size(); i++) {
+      VoteResult result = results.get(i);
+      if (result.isAccepted() && overspent.contains(result.getUserId())) {
+        result.setAccepted(false);
+        result.setError(NOT_ENOUGH_VOTES);
+      } else if (result.isAccepted()) {
+        accepted.add(votes.get(i));
+      }
+    }
+    voteRepository.insertVotes(accepted);
+    Map<Integer, Integer> credits = new LinkedHashMap<>();
+    accepted.forEach(vote -> credits.merge(vote.getRsEventId(), vote.getVoteNum(), Integer::sum));
+    jdbcTemplate.batchUpdate(CREDIT_EVENT, credits.entrySet().stream()
+        .map(entry -> new Object[] {entry.getValue(), entry.getKey()})
+        .collect(Collectors.toList()));
+    return credits;
+  }
+
+  private List<VoteResult> abort(List<VoteResult> results) {
+    results.stream().filter(VoteResult::isAccepted).forEach(result -> {
+      result.setAccepted(false);
+      result.setError(ABORTED);
+    });
+    return results;
+  }
+
+  private static class BudgetChangedException extends RuntimeException {
+  }
+}
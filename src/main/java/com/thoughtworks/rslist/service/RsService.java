@@ -1,13 +1,36 @@
 package com.thoughtworks.rslist.service;
 
+import com.thoughtworks.rslist.component.RankAuction;
+import com.thoughtworks.rslist.component.ReadRouting;
+import com.thoughtworks.rslist.component.RsEventLeaderboard;
+import com.thoughtworks.rslist.component.TradeJournal;
+import com.thoughtworks.rslist.component.VoteBatcher;
+import com.thoughtworks.rslist.component.VoteBudgets;
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.domain.RsEventPage;
 import com.thoughtworks.rslist.domain.Trade;
 import com.thoughtworks.rslist.domain.Vote;
 import com.thoughtworks.rslist.dto.*;
-import com.thoughtworks.rslist.exception.FailedToBuyRankException;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
 import com.thoughtworks.rslist.repository.*;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.Optional;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class RsService {
@@ -16,63 +39,251 @@ public class RsService {
   final VoteRepository voteRepository;
   final RankDtoRepository rankDtoRepository;
   final RankRecordRepository rankRecordRepository;
+  final RsEventLeaderboard rsEventLeaderboard;
+  final VoteBatcher voteBatcher;
+  final VoteBudgets voteBudgets;
+  final RankAuction rankAuction;
+  final TradeJournal tradeJournal;
+  final ObjectProvider<ReadRouting> readRouting;
+  final TransactionTemplate transactionTemplate;
+  final TransactionTemplate readOnlyTransactionTemplate;
 
   public RsService(RsEventRepository rsEventRepository, UserRepository userRepository, VoteRepository voteRepository,
-                   RankDtoRepository rankDtoRepository, RankRecordRepository rankRecordRepository) {
+                   RankDtoRepository rankDtoRepository, RankRecordRepository rankRecordRepository,
+                   RsEventLeaderboard rsEventLeaderboard, VoteBatcher voteBatcher, VoteBudgets voteBudgets,
+                   RankAuction rankAuction, TradeJournal tradeJournal, ObjectProvider<ReadRouting> readRouting,
+                   PlatformTransactionManager transactionManager) {
     this.rsEventRepository = rsEventRepository;
     this.userRepository = userRepository;
     this.voteRepository = voteRepository;
     this.rankDtoRepository = rankDtoRepository;
     this.rankRecordRepository = rankRecordRepository;
+    this.rsEventLeaderboard = rsEventLeaderboard;
+    this.voteBatcher = voteBatcher;
+    this.voteBudgets = voteBudgets;
+    this.rankAuction = rankAuction;
+    this.tradeJournal = tradeJournal;
+    this.readRouting = readRouting;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+    this.readOnlyTransactionTemplate.setReadOnly(true);
   }
 
+  /**
+   * Reserves the votes against the user's resident budget first, so a vote the user cannot afford
+   * is turned away without touching the database; the reservation is settled once the debit of
+   * the user row is committed or has failed.
+   */
   public void vote(Vote vote, int rsEventId) {
-    Optional<RsEventDto> rsEventDto = rsEventRepository.findById(rsEventId);
-    Optional<UserDto> userDto = userRepository.findById(vote.getUserId());
-    if (!rsEventDto.isPresent()
-        || !userDto.isPresent()
-        || vote.getVoteNum() > userDto.get().getVoteNum()) {
+    if (!voteBudgets.reserve(vote.getUserId(), vote.getVoteNum())) {
       throw new RuntimeException();
     }
-    VoteDto voteDto =
-        VoteDto.builder()
-            .localDateTime(vote.getTime())
-            .num(vote.getVoteNum())
-            .rsEvent(rsEventDto.get())
-            .user(userDto.get())
-            .build();
-    voteRepository.save(voteDto);
-    UserDto user = userDto.get();
-    user.setVoteNum(user.getVoteNum() - vote.getVoteNum());
-    userRepository.save(user);
-    RsEventDto rsEvent = rsEventDto.get();
-    rsEvent.setVoteNum(rsEvent.getVoteNum() + vote.getVoteNum());
-    rsEventRepository.save(rsEvent);
+    if (voteBatcher.isEnabled()) {
+      voteLater(vote, rsEventId);
+      return;
+    }
+    try {
+      transactionTemplate.executeWithoutResult(status -> {
+        if (userRepository.spendVotes(vote.getUserId(), vote.getVoteNum()) == 0
+            || rsEventRepository.addVotes(rsEventId, vote.getVoteNum()) == 0) {
+          throw new RuntimeException();
+        }
+        voteRepository.insertVote(vote.getTime(), vote.getVoteNum(), vote.getUserId(), rsEventId);
+        afterCommit(() -> rsEventLeaderboard.addVotes(rsEventId, vote.getVoteNum()));
+      });
+    } catch (RuntimeException e) {
+      voteBudgets.release(vote.getUserId(), vote.getVoteNum());
+      throw e;
+    }
+    voteBudgets.commit(vote.getUserId(), vote.getVoteNum());
+    readRouting.ifAvailable(routing -> routing.recordWrite(vote.getUserId()));
+  }
+
+  // The batcher settles the reservation once it has taken the vote.
+  private void voteLater(Vote vote, int rsEventId) {
+    if (!rsEventRepository.existsById(rsEventId)) {
+      voteBudgets.release(vote.getUserId(), vote.getVoteNum());
+      throw new RuntimeException();
+    }
+    voteBatcher.submit(vote, rsEventId);
   }
 
   public void buy(Trade trade, int eventId) {
-    int rank = trade.getRank();
-    Optional<RankDto> optionalRankDto = rankDtoRepository.findRankDtoByRankPos(rank);
-    if (optionalRankDto.isPresent()) {
-      RankDto rankDto = optionalRankDto.get();
-      if (trade.getAmount() > rankDto.getPrice()) {
+    rankAuction.bid(trade.getRank(), trade.getAmount(), eventId, this::saveTrade);
+  }
+
+  // Runs on the auction's writer thread, one won bid at a time in the order they won.
+  void saveTrade(RankAuction.Bid bid) {
+    transactionTemplate.executeWithoutResult(status -> {
+      RankDto rankDto = rankDtoRepository.findRankDtoByRankPos(bid.getRankPos())
+          .orElseGet(() -> RankDto.builder().rankPos(bid.getRankPos()).build());
+      if (rankDto.getRsEventId() != null && rankDto.getRsEventId() != bid.getRsEventId()) {
         rsEventRepository.deleteById(rankDto.getRsEventId());
-        rankDtoRepository.deleteById(rankDto.getId());
-        rankDto.setRsEventId(eventId);
-        rankDto.setPrice(trade.getAmount());
-        rankDtoRepository.save(rankDto);
-        RankRecordDto rankRecordDto = RankRecordDto.builder().price(rankDto.getPrice()).rankPos(rankDto.getRankPos())
-                .rsEventId(rankDto.getRsEventId()).build();
-        rankRecordRepository.save(rankRecordDto);
+      }
+      rankDto.setPrice(bid.getPrice());
+      rankDto.setRsEventId(bid.getRsEventId());
+      rankDtoRepository.save(rankDto);
+      if (tradeJournal.isEnabled()) {
+        // Appended before the commit, so a crash right after it cannot lose the record.
+        tradeJournal.append(bid.getRankPos(), bid.getPrice(), bid.getRsEventId());
       } else {
-        throw new FailedToBuyRankException("The amount you pay is not enough to buy that rank");
+        rankRecordRepository.save(RankRecordDto.builder().price(bid.getPrice()).rankPos(bid.getRankPos())
+            .rsEventId(bid.getRsEventId()).tradedAt(LocalDateTime.now()).build());
       }
+      afterCommit(() -> rsEventLeaderboard.assignRank(rankDto));
+    });
+  }
+
+  /**
+   * Reads positions start..end of the ranking straight from the database. Without a cursor the
+   * vote-ordered part is fetched with LIMIT/OFFSET; with a cursor ("voteNum,id" of the last
+   * vote-ordered event of the previous page) it is fetched by keyset, so deep pages stay cheap.
+   */
+  public RsEventPage getRsEventPage(int start, int end, String cursor) {
+    return readOnlyTransactionTemplate.execute(status -> readRsEventPage(start, end, cursor));
+  }
+
+  private RsEventPage readRsEventPage(int start, int end, String cursor) {
+    long total = rsEventRepository.count();
+    if (start < 1 || end > total || start > end + 1) {
+      throw new RequestNotValidException("invalid index");
+    }
+    PaidRanks paidRanks = loadPaidRanks(total);
+    TreeMap<Integer, RsEventDto> anchored = paidRanks.anchored;
+    List<RsEventDto> overflow = paidRanks.overflow;
+
+    int unpaidTotal = (int) total - paidRanks.paidEvents;
+    int unpaidBefore = start - 1 - anchored.headMap(start).size();
+    int freeInWindow = end - start + 1 - anchored.subMap(start, true, end, true).size();
+    int limit = Math.max(Math.min(freeInWindow, unpaidTotal - unpaidBefore), 0);
+    List<RsEventDto> unpaid;
+    if (limit == 0) {
+      unpaid = new ArrayList<>();
+    } else if (cursor == null) {
+      unpaid = rsEventRepository.findUnpaidPage(unpaidBefore, limit);
     } else {
-      RankDto rankDto = RankDto.builder().rankPos(rank).price(trade.getAmount()).rsEventId(eventId).build();
-      rankDtoRepository.save(rankDto);
-      RankRecordDto rankRecordDto = RankRecordDto.builder().price(rankDto.getPrice()).rankPos(rankDto.getRankPos())
-              .rsEventId(rankDto.getRsEventId()).build();
-      rankRecordRepository.save(rankRecordDto);
+      int[] after = parseCursor(cursor);
+      unpaid = rsEventRepository.findUnpaidPageAfter(after[0], after[1], limit);
+    }
+
+    List<RsEvent> rsEvents = new ArrayList<>(end - start + 1);
+    Iterator<RsEventDto> unpaidIterator = unpaid.iterator();
+    int freeIndex = unpaidBefore;
+    for (int position = start; position <= end; position++) {
+      RsEventDto rsEventDto = anchored.get(position);
+      if (rsEventDto == null) {
+        int overflowIndex = Math.max(freeIndex - unpaidTotal, 0);
+        if (unpaidIterator.hasNext()) {
+          rsEventDto = unpaidIterator.next();
+        } else if (overflowIndex < overflow.size()) {
+          rsEventDto = overflow.get(overflowIndex);
+        } else {
+          break;
+        }
+        freeIndex++;
+      }
+      rsEvents.add(toRsEvent(rsEventDto));
+    }
+    String nextCursor = unpaid.isEmpty()
+        ? cursor
+        : unpaid.get(unpaid.size() - 1).getVoteNum() + "," + unpaid.get(unpaid.size() - 1).getId();
+    return new RsEventPage(rsEvents, nextCursor);
+  }
+
+  /** The first k positions of the ranking, read with one LIMIT k query for the vote-ordered part. */
+  public List<RsEvent> getTop(int k) {
+    return readOnlyTransactionTemplate.execute(status ->
+        readRsEventPage(1, (int) Math.min(k, rsEventRepository.count()), null).getRsEvents());
+  }
+
+  /**
+   * Walks the whole ranking in order, paid ranks included, on a forward-only database cursor so
+   * memory use does not grow with the number of events.
+   */
+  public void forEachRankedEvent(Consumer<RsEvent> consumer) {
+    readOnlyTransactionTemplate.executeWithoutResult(status -> {
+      long total = rsEventRepository.count();
+      PaidRanks paidRanks = loadPaidRanks(total);
+      try (Stream<RsEvent> unpaid = rsEventRepository.streamUnpaidRanking()) {
+        Iterator<RsEvent> unpaidIterator = unpaid.iterator();
+        Iterator<RsEventDto> overflowIterator = paidRanks.overflow.iterator();
+        for (int position = 1; position <= total; position++) {
+          RsEventDto paid = paidRanks.anchored.get(position);
+          if (paid != null) {
+            consumer.accept(toRsEvent(paid));
+          } else if (unpaidIterator.hasNext()) {
+            consumer.accept(unpaidIterator.next());
+          } else if (overflowIterator.hasNext()) {
+            consumer.accept(toRsEvent(overflowIterator.next()));
+          } else {
+            break;
+          }
+        }
+      }
+    });
+  }
+
+  // Paid ranks within the list stay at their position, the ones past its end follow the rest.
+  private PaidRanks loadPaidRanks(long total) {
+    List<RankDto> rankDtos = rankDtoRepository.findAll();
+    Map<Integer, RsEventDto> paidEvents = new HashMap<>();
+    rsEventRepository.findAllById(rankDtos.stream().map(RankDto::getRsEventId).collect(Collectors.toList()))
+        .forEach(rsEventDto -> paidEvents.put(rsEventDto.getId(), rsEventDto));
+    PaidRanks paidRanks = new PaidRanks(paidEvents.size());
+    rankDtos.stream()
+        .filter(rankDto -> paidEvents.containsKey(rankDto.getRsEventId()))
+        .sorted(Comparator.comparing(RankDto::getRankPos))
+        .forEach(rankDto -> {
+          if (rankDto.getRankPos() <= total) {
+            paidRanks.anchored.put(rankDto.getRankPos(), paidEvents.get(rankDto.getRsEventId()));
+          } else {
+            paidRanks.overflow.add(paidEvents.get(rankDto.getRsEventId()));
+          }
+        });
+    return paidRanks;
+  }
+
+  private int[] parseCursor(String cursor) {
+    String[] parts = cursor.split(",");
+    try {
+      if (parts.length == 2) {
+        return new int[] {Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim())};
+      }
+    } catch (NumberFormatException ignored) {
+      // reported below
+    }
+    throw new RequestNotValidException("invalid cursor");
+  }
+
+  private void afterCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+      @Override
+      public void afterCommit() {
+        action.run();
+      }
+    });
+  }
+
+  private RsEvent toRsEvent(RsEventDto item) {
+    return RsEvent.builder()
+        .eventName(item.getEventName())
+        .keyword(item.getKeyword())
+        .userId(item.getId())
+        .voteNum(item.getVoteNum())
+        .build();
+  }
+
+  private static class PaidRanks {
+    final TreeMap<Integer, RsEventDto> anchored = new TreeMap<>();
+    final List<RsEventDto> overflow = new ArrayList<>();
+    final int paidEvents;
+
+    PaidRanks(int paidEvents) {
+      this.paidEvents = paidEvents;
     }
   }
 }
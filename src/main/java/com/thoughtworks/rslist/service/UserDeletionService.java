@@ -0,0 +1,200 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.component.RankAuction;
+import com.thoughtworks.rslist.component.RsEventLeaderboard;
+import com.thoughtworks.rslist.component.VoteBudgets;
+import com.thoughtworks.rslist.domain.VoteTotal;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.repository.RankDtoRepository;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Deletes users with set-based statements instead of the entity cascade on UserDto.rsEventDtos.
+ *
+ * <p>Rows go in dependency order: the votes cast on the user's events, with the voters' budgets
+ * given back, the rank_pos slots of those events and the events themselves; then the votes the
+ * user cast on other events, taken off those events' vote_num, and last the user row. The
+ * snapshot totals of {@link VoteLedgerService} and the ranks held in {@link RankAuction} are
+ * kept in step. {@link #delete} does all of it
+ * in one transaction; {@link #deleteLater} does it on a background thread in transactions of at
+ * most chunk-size events each, so locks on a heavy user's rows are held only briefly.
+ */
+@Slf4j
+@Service
+public class UserDeletionService {
+  private static final String REFUND_USER = "UPDATE user SET vote_num = vote_num + ? WHERE id = ?";
+  private static final String DEBIT_EVENT = "UPDATE rs_event SET vote_num = vote_num - ? WHERE id = ?";
+
+  final UserRepository userRepository;
+  final RsEventRepository rsEventRepository;
+  final RankDtoRepository rankDtoRepository;
+  final VoteRepository voteRepository;
+  final VoteLedgerService voteLedgerService;
+  final RsEventLeaderboard rsEventLeaderboard;
+  final RankAuction rankAuction;
+  final VoteBudgets voteBudgets;
+  final JdbcTemplate jdbcTemplate;
+  final TransactionTemplate transactionTemplate;
+  final int chunkSize;
+  private ExecutorService deleter;
+
+  public UserDeletionService(UserRepository userRepository, RsEventRepository rsEventRepository,
+                             RankDtoRepository rankDtoRepository, VoteRepository voteRepository,
+                             VoteLedgerService voteLedgerService, RsEventLeaderboard rsEventLeaderboard,
+                             RankAuction rankAuction, VoteBudgets voteBudgets, JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${rs.user.delete.chunk-size:500}") int chunkSize) {
+    this.userRepository = userRepository;
+    this.rsEventRepository = rsEventRepository;
+    this.rankDtoRepository = rankDtoRepository;
+    this.voteRepository = voteRepository;
+    this.voteLedgerService = voteLedgerService;
+    this.rsEventLeaderboard = rsEventLeaderboard;
+    this.rankAuction = rankAuction;
+    this.voteBudgets = voteBudgets;
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.chunkSize = chunkSize;
+  }
+
+  @PostConstruct
+  public void start() {
+    deleter = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "user-deleter");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    deleter.shutdown();
+    deleter.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  public void delete(int userId) {
+    checkExists(userId);
+    step(changes -> {
+      deleteEvents(userId, Integer.MAX_VALUE, changes);
+      deleteCastVotes(userId, Integer.MAX_VALUE, changes);
+      deleteUser(userId, changes);
+      return false;
+    });
+  }
+
+  /** Returns at once and deletes the user chunk by chunk; the future completes once the row is gone. */
+  public CompletableFuture<Void> deleteLater(int userId) {
+    checkExists(userId);
+    rsEventLeaderboard.removeByUserId(userId);
+    return CompletableFuture.runAsync(() -> {
+      while (step(changes -> deleteEvents(userId, chunkSize, changes))) {
+        log.debug("Deleted {} events of user {}", chunkSize, userId);
+      }
+      while (step(changes -> deleteCastVotes(userId, chunkSize, changes))) {
+        log.debug("Deleted votes of user {} on {} events", userId, chunkSize);
+      }
+      // Votes cast while the chunks ran go with the user row.
+      step(changes -> {
+        deleteCastVotes(userId, Integer.MAX_VALUE, changes);
+        deleteUser(userId, changes);
+        return false;
+      });
+    }, deleter).whenComplete((ignored, e) -> {
+      if (e != null) {
+        log.error("Failed to delete user {}", userId, e);
+      }
+    });
+  }
+
+  private void checkExists(int userId) {
+    if (!userRepository.existsById(userId)) {
+      throw new RequestNotValidException("user not found");
+    }
+  }
+
+  // Runs work in one transaction and updates the in-memory state once it committed; returns
+  // whether work has more to do.
+  private boolean step(Predicate<Changes> work) {
+    Changes changes = new Changes();
+    boolean more = voteLedgerService.withoutSnapshot(() -> transactionTemplate.execute(status -> work.test(changes)));
+    changes.rsEventIds.forEach(rsEventLeaderboard::remove);
+    rankAuction.release(changes.rsEventIds);
+    changes.eventDebits.forEach((rsEventId, votes) -> rsEventLeaderboard.addVotes(rsEventId, -votes));
+    changes.refunds.forEach(voteBudgets::refund);
+    changes.userIds.forEach(voteBudgets::evict);
+    return more;
+  }
+
+  private boolean deleteEvents(int userId, int limit, Changes changes) {
+    List<Integer> rsEventIds = rsEventRepository.findIdsByUserId(userId, PageRequest.of(0, limit));
+    if (rsEventIds.isEmpty()) {
+      return false;
+    }
+    List<VoteTotal> refunds = voteRepository.sumVotesOnEventsByUser(rsEventIds);
+    jdbcTemplate.batchUpdate(REFUND_USER, toArgs(refunds));
+    voteLedgerService.unfoldVotesOnEvents(rsEventIds);
+    voteRepository.deleteVotesOnEvents(rsEventIds);
+    rankDtoRepository.deleteByRsEventIds(rsEventIds);
+    rsEventRepository.deleteAllByIds(rsEventIds);
+    refunds.forEach(votes -> changes.refunds.merge(votes.getId(), (int) votes.getVotes(), Integer::sum));
+    changes.rsEventIds.addAll(rsEventIds);
+    return rsEventIds.size() == limit;
+  }
+
+  private boolean deleteCastVotes(int userId, int limit, Changes changes) {
+    List<VoteTotal> cast = voteRepository.sumVotesOfUserByEvent(userId);
+    if (cast.isEmpty()) {
+      return false;
+    }
+    List<VoteTotal> chunk = cast.subList(0, Math.min(limit, cast.size()));
+    List<Integer> rsEventIds = chunk.stream().map(VoteTotal::getId).collect(Collectors.toList());
+    jdbcTemplate.batchUpdate(DEBIT_EVENT, toArgs(chunk));
+    voteLedgerService.unfoldVotesOfUser(userId, rsEventIds);
+    voteRepository.deleteVotesOfUserOnEvents(userId, rsEventIds);
+    chunk.forEach(votes -> changes.eventDebits.merge(votes.getId(), (int) votes.getVotes(), Integer::sum));
+    return cast.size() > limit;
+  }
+
+  private void deleteUser(int userId, Changes changes) {
+    voteLedgerService.forgetUser(userId);
+    userRepository.deleteRowById(userId);
+    changes.userIds.add(userId);
+  }
+
+  private static List<Object[]> toArgs(List<VoteTotal> voteTotals) {
+    return voteTotals.stream()
+        .map(votes -> new Object[] {votes.getVotes(), votes.getId()})
+        .collect(Collectors.toList());
+  }
+
+  private static class Changes {
+    final List<Integer> rsEventIds = new ArrayList<>();
+    final Map<Integer, Integer> eventDebits = new HashMap<>();
+    final Map<Integer, Integer> refunds = new HashMap<>();
+    final Set<Integer> userIds = new HashSet<>();
+  }
+}
@@ -0,0 +1,70 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.User;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Registers users in bulk. Ids come from the pooled user_id_seq (one round trip per
+ * allocationSize users) and the inserts go out as Hibernate JDBC batches, flushed and detached
+ * every batch-size users so the persistence context stays small however long the list is.
+ */
+@Service
+public class UserService {
+  final Validator validator;
+  final TransactionTemplate transactionTemplate;
+  final int batchSize;
+
+  @PersistenceContext EntityManager entityManager;
+
+  public UserService(Validator validator, PlatformTransactionManager transactionManager,
+                     @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}") int batchSize) {
+    this.validator = validator;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.batchSize = batchSize;
+  }
+
+  /** Validates every user first and registers none of them if any is invalid. */
+  public int registerAll(List<User> users) {
+    for (int i = 0; i < users.size(); i++) {
+      Set<ConstraintViolation<User>> violations = validator.validate(users.get(i));
+      if (!violations.isEmpty()) {
+        ConstraintViolation<User> violation = violations.iterator().next();
+        throw new RequestNotValidException(
+            "invalid user at index " + i + ": " + violation.getPropertyPath() + " " + violation.getMessage());
+      }
+    }
+    transactionTemplate.executeWithoutResult(status -> {
+      for (int i = 0; i < users.size(); i++) {
+        entityManager.persist(toUserDto(users.get(i)));
+        if ((i + 1) % batchSize == 0) {
+          entityManager.flush();
+          entityManager.clear();
+        }
+      }
+    });
+    return users.size();
+  }
+
+  private UserDto toUserDto(User user) {
+    return UserDto.builder()
+        .userName(user.getUserName())
+        .gender(user.getGender())
+        .age(user.getAge())
+        .email(user.getEmail())
+        .phone(user.getPhone())
+        .voteNum(user.getVoteNum())
+        .build();
+  }
+}
@@ -0,0 +1,337 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.component.ReadRouting;
+import com.thoughtworks.rslist.component.RsEventLeaderboard;
+import com.thoughtworks.rslist.component.VoteBudgets;
+import com.thoughtworks.rslist.component.VoteOutbox;
+import com.thoughtworks.rslist.component.VoteShards;
+import com.thoughtworks.rslist.domain.VoteMismatch;
+import com.thoughtworks.rslist.domain.VoteTotal;
+import com.thoughtworks.rslist.dto.EventVoteTotalDto;
+import com.thoughtworks.rslist.dto.UserVoteTotalDto;
+import com.thoughtworks.rslist.dto.VoteSnapshotDto;
+import com.thoughtworks.rslist.repository.EventVoteTotalRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.UserVoteTotalRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.repository.VoteSnapshotRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Treats the vote table as the append-only ledger the vote counters are derived from.
+ *
+ * <p>A snapshot folds the votes added since the previous one into event_vote_total and
+ * user_vote_total, so current totals are the snapshot plus a GROUP BY over the short tail of newer
+ * votes. Vote ids are handed out before their transaction commits, so a snapshot only folds up to
+ * the highest id seen by the snapshot before it. {@link #check()} compares the totals with
+ * rs_event.vote_num and with what each user has left of rs.vote.initial-budget; {@link #rebuild()}
+ * moves those counters to the totals with guarded increments. {@link #reconcileBudgets()} brings the resident
+ * {@link VoteBudgets} back in line with the user table after every scheduled snapshot. When the
+ * votes live in {@link VoteShards} there are no snapshots and the totals are summed over every
+ * shard and the {@link VoteOutbox} rows not copied yet, with copying paused so the sums see the
+ * same votes as the counters. Created eagerly even with lazy initialization so the schedule
+ * starts with the application.
+ */
+@Slf4j
+@Lazy(false)
+@Service
+public class VoteLedgerService {
+  private static final int SNAPSHOT_ID = 1;
+  private static final int RECONCILE_BATCH_SIZE = 1000;
+  private static final int CHECK_PAGE_SIZE = 1000;
+  private static final int REBUILD_ROUNDS = 3;
+  private static final String PAGE_EVENTS = "SELECT id, vote_num FROM rs_event WHERE id > ? ORDER BY id LIMIT ?";
+  private static final String PAGE_USERS = "SELECT id, vote_num FROM user WHERE id > ? ORDER BY id LIMIT ?";
+  private static final String CORRECT_EVENT =
+      "UPDATE rs_event SET vote_num = vote_num + ? WHERE id = ? AND vote_num = ?";
+  private static final String CORRECT_USER = "UPDATE user SET vote_num = vote_num + ? WHERE id = ? AND vote_num = ?";
+
+  final VoteRepository voteRepository;
+  final UserRepository userRepository;
+  final VoteSnapshotRepository voteSnapshotRepository;
+  final EventVoteTotalRepository eventVoteTotalRepository;
+  final UserVoteTotalRepository userVoteTotalRepository;
+  final RsEventLeaderboard rsEventLeaderboard;
+  final VoteShards voteShards;
+  final VoteOutbox voteOutbox;
+  final VoteBudgets voteBudgets;
+  final JdbcTemplate jdbcTemplate;
+  final TransactionTemplate transactionTemplate;
+  final int initialBudget;
+  final long snapshotIntervalMillis;
+  private ScheduledExecutorService snapshotter;
+
+  public VoteLedgerService(VoteRepository voteRepository, UserRepository userRepository,
+                           VoteSnapshotRepository voteSnapshotRepository,
+                           EventVoteTotalRepository eventVoteTotalRepository,
+                           UserVoteTotalRepository userVoteTotalRepository, RsEventLeaderboard rsEventLeaderboard,
+                           VoteShards voteShards, VoteOutbox voteOutbox, VoteBudgets voteBudgets,
+                           JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                           @Value("${rs.vote.initial-budget:10}") int initialBudget,
+                           @Value("${rs.vote.ledger.snapshot-interval-ms:0}") long snapshotIntervalMillis) {
+    this.voteRepository = voteRepository;
+    this.userRepository = userRepository;
+    this.voteSnapshotRepository = voteSnapshotRepository;
+    this.eventVoteTotalRepository = eventVoteTotalRepository;
+    this.userVoteTotalRepository = userVoteTotalRepository;
+    this.rsEventLeaderboard = rsEventLeaderboard;
+    this.voteShards = voteShards;
+    this.voteOutbox = voteOutbox;
+    this.voteBudgets = voteBudgets;
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.initialBudget = initialBudget;
+    this.snapshotIntervalMillis = snapshotIntervalMillis;
+  }
+
+  @PostConstruct
+  public void start() {
+    if (snapshotIntervalMillis <= 0) {
+      return;
+    }
+    snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "vote-snapshot");
+      thread.setDaemon(true);
+      return thread;
+    });
+    snapshotter.scheduleWithFixedDelay(() -> {
+      try {
+        if (!voteShards.isEnabled()) {
+          snapshot();
+        }
+        reconcileBudgets();
+      } catch (RuntimeException e) {
+        log.error("Failed to take vote snapshot", e);
+      }
+    }, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    if (snapshotter != null) {
+      snapshotter.shutdown();
+      snapshotter.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
+  /** Folds the settled votes into the totals and remembers the newest vote id for next time. */
+  public synchronized VoteSnapshotDto snapshot() {
+    return transactionTemplate.execute(status -> {
+      VoteSnapshotDto snapshot = voteSnapshotRepository.findById(SNAPSHOT_ID)
+          .orElseGet(() -> VoteSnapshotDto.builder().id(SNAPSHOT_ID).build());
+      int from = snapshot.getLastVoteId();
+      int to = snapshot.getObservedVoteId();
+      if (to > from) {
+        Map<Integer, EventVoteTotalDto> eventTotals = new HashMap<>();
+        List<VoteTotal> eventVotes = voteRepository.sumByEvent(from, to);
+        eventVoteTotalRepository.findAllById(ids(eventVotes))
+            .forEach(total -> eventTotals.put(total.getRsEventId(), total));
+        for (VoteTotal votes : eventVotes) {
+          EventVoteTotalDto total = eventTotals.computeIfAbsent(votes.getId(), id -> new EventVoteTotalDto(id, 0));
+          total.setVotes(total.getVotes() + votes.getVotes());
+        }
+        eventVoteTotalRepository.saveAll(eventTotals.values());
+
+        Map<Integer, UserVoteTotalDto> userTotals = new HashMap<>();
+        List<VoteTotal> userVotes = voteRepository.sumByUser(from, to);
+        userVoteTotalRepository.findAllById(ids(userVotes))
+            .forEach(total -> userTotals.put(total.getUserId(), total));
+        for (VoteTotal votes : userVotes) {
+          UserVoteTotalDto total = userTotals.computeIfAbsent(votes.getId(), id -> new UserVoteTotalDto(id, 0));
+          total.setSpent(total.getSpent() + votes.getVotes());
+        }
+        userVoteTotalRepository.saveAll(userTotals.values());
+        snapshot.setLastVoteId(to);
+      }
+      snapshot.setObservedVoteId(Math.max(voteRepository.findMaxId(), snapshot.getLastVoteId()));
+      snapshot.setTakenAt(LocalDateTime.now());
+      return voteSnapshotRepository.save(snapshot);
+    });
+  }
+
+  /**
+   * Runs work, which deletes votes in transactions of its own, while no snapshot is being taken,
+   * so votes are not folded into the totals between {@link #unfoldVotesOnEvents} and their delete,
+   * and while no votes are copied to the shards.
+   */
+  public synchronized <T> T withoutSnapshot(Supplier<T> work) {
+    return voteOutbox.paused(work);
+  }
+
+  /** Takes the snapshotted votes on rsEventIds out of the totals; call before deleting them. */
+  public void unfoldVotesOnEvents(List<Integer> rsEventIds) {
+    if (voteShards.isEnabled()) {
+      return;
+    }
+    voteRepository.sumByUserOnEvents(rsEventIds, lastVoteId())
+        .forEach(votes -> userVoteTotalRepository.subtractSpent(votes.getId(), votes.getVotes()));
+    eventVoteTotalRepository.deleteByRsEventIds(rsEventIds);
+  }
+
+  /** Takes the snapshotted votes of userId on rsEventIds out of the totals; call before deleting them. */
+  public void unfoldVotesOfUser(int userId, List<Integer> rsEventIds) {
+    if (voteShards.isEnabled()) {
+      return;
+    }
+    long spent = 0;
+    for (VoteTotal votes : voteRepository.sumByEventOfUser(userId, rsEventIds, lastVoteId())) {
+      eventVoteTotalRepository.subtractVotes(votes.getId(), votes.getVotes());
+      spent += votes.getVotes();
+    }
+    userVoteTotalRepository.subtractSpent(userId, spent);
+  }
+
+  /** Drops the totals of a user that no longer has any votes. */
+  public void forgetUser(int userId) {
+    userVoteTotalRepository.deleteByUserId(userId);
+  }
+
+  /**
+   * Lists every event and user whose counter disagrees with the ledger, reading the counters a
+   * page at a time in the same transaction as the totals.
+   */
+  public List<VoteMismatch> check() {
+    return voteOutbox.paused(() -> transactionTemplate.execute(status -> {
+      Totals totals = totals();
+      List<VoteMismatch> mismatches = new ArrayList<>();
+      forEachCounter(PAGE_EVENTS, counter -> {
+        long expected = totals.eventVotes.getOrDefault(counter.getId(), 0L);
+        if (expected != counter.getVotes()) {
+          mismatches.add(new VoteMismatch(VoteMismatch.Type.EVENT, counter.getId(), expected, counter.getVotes()));
+        }
+      });
+      forEachCounter(PAGE_USERS, counter -> {
+        long expected = initialBudget - totals.userSpent.getOrDefault(counter.getId(), 0L);
+        if (expected != counter.getVotes()) {
+          mismatches.add(new VoteMismatch(VoteMismatch.Type.USER, counter.getId(), expected, counter.getVotes()));
+        }
+      });
+      return mismatches;
+    }));
+  }
+
+  /**
+   * Moves every drifted counter to the ledger's value and returns what was corrected. A correction
+   * adds the difference and only applies while the counter still holds the value the check read,
+   * so a vote landing meanwhile is kept; counters that moved are checked again, up to
+   * REBUILD_ROUNDS times.
+   */
+  public List<VoteMismatch> rebuild() {
+    List<VoteMismatch> corrected = new ArrayList<>();
+    int missed = 0;
+    for (int round = 0; round < REBUILD_ROUNDS && (round == 0 || missed > 0); round++) {
+      missed = 0;
+      for (VoteMismatch mismatch : check()) {
+        String correct = mismatch.getType() == VoteMismatch.Type.EVENT ? CORRECT_EVENT : CORRECT_USER;
+        if (jdbcTemplate.update(correct, mismatch.getExpected() - mismatch.getActual(), mismatch.getId(),
+            mismatch.getActual()) == 1) {
+          corrected.add(mismatch);
+        } else {
+          missed++;
+        }
+      }
+    }
+    if (missed > 0) {
+      log.warn("Left {} vote counters that kept changing during rebuild", missed);
+    }
+    if (!corrected.isEmpty()) {
+      rsEventLeaderboard.reload();
+      reconcileBudgets();
+    }
+    return corrected;
+  }
+
+  /**
+   * Sets every resident budget with nothing in flight to the user's vote_num, which the vote
+   * writes keep in step with the ledger and {@link #rebuild()} resets from it, and returns how
+   * many were off.
+   */
+  public int reconcileBudgets() {
+    VoteBudgets.Idle idle = voteBudgets.idle();
+    List<Integer> userIds = idle.getUserIds();
+    Map<Integer, Long> budgets = new HashMap<>();
+    ReadRouting.onPrimary(() -> {
+      for (int from = 0; from < userIds.size(); from += RECONCILE_BATCH_SIZE) {
+        List<Integer> batch = userIds.subList(from, Math.min(from + RECONCILE_BATCH_SIZE, userIds.size()));
+        userRepository.findAllById(batch)
+            .forEach(userDto -> budgets.put(userDto.getId(), (long) userDto.getVoteNum()));
+      }
+    });
+    int corrected = voteBudgets.reconcile(idle, userId -> budgets.getOrDefault(userId, 0L));
+    if (corrected > 0) {
+      log.warn("Corrected {} drifted vote budgets", corrected);
+    }
+    return corrected;
+  }
+
+  // Snapshot totals plus the votes after it; call inside a transaction, with copying paused.
+  private Totals totals() {
+    if (voteShards.isEnabled()) {
+      Totals totals = new Totals();
+      voteShards.sumByEvent().forEach(votes -> totals.eventVotes.put(votes.getId(), votes.getVotes()));
+      voteShards.sumByUser().forEach(votes -> totals.userSpent.put(votes.getId(), votes.getVotes()));
+      voteOutbox.sumByEvent().forEach(votes -> totals.eventVotes.merge(votes.getId(), votes.getVotes(), Long::sum));
+      voteOutbox.sumByUser().forEach(votes -> totals.userSpent.merge(votes.getId(), votes.getVotes(), Long::sum));
+      return totals;
+    }
+    int from = lastVoteId();
+    Totals totals = new Totals();
+    eventVoteTotalRepository.findAll()
+        .forEach(total -> totals.eventVotes.put(total.getRsEventId(), total.getVotes()));
+    userVoteTotalRepository.findAll()
+        .forEach(total -> totals.userSpent.put(total.getUserId(), total.getSpent()));
+    voteRepository.sumByEvent(from, Integer.MAX_VALUE)
+        .forEach(votes -> totals.eventVotes.merge(votes.getId(), votes.getVotes(), Long::sum));
+    voteRepository.sumByUser(from, Integer.MAX_VALUE)
+        .forEach(votes -> totals.userSpent.merge(votes.getId(), votes.getVotes(), Long::sum));
+    return totals;
+  }
+
+  // Pages through the id and vote_num of every row of a counter table, in id order.
+  private void forEachCounter(String page, Consumer<VoteTotal> consumer) {
+    int after = Integer.MIN_VALUE;
+    while (true) {
+      List<VoteTotal> counters = jdbcTemplate.query(page,
+          (rs, rowNum) -> new VoteTotal(rs.getInt("id"), rs.getLong("vote_num")), after, CHECK_PAGE_SIZE);
+      counters.forEach(consumer);
+      if (counters.size() < CHECK_PAGE_SIZE) {
+        return;
+      }
+      after = counters.get(counters.size() - 1).getId();
+    }
+  }
+
+  private int lastVoteId() {
+    return voteSnapshotRepository.findById(SNAPSHOT_ID).map(VoteSnapshotDto::getLastVoteId).orElse(0);
+  }
+
+  private static List<Integer> ids(List<VoteTotal> voteTotals) {
+    List<Integer> ids = new ArrayList<>(voteTotals.size());
+    voteTotals.forEach(voteTotal -> ids.add(voteTotal.getId()));
+    return ids;
+  }
+
+  private static class Totals {
+    final Map<Integer, Long> eventVotes = new HashMap<>();
+    final Map<Integer, Long> userSpent = new HashMap<>();
+  }
+}
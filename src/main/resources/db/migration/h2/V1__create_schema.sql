@@ -0,0 +1,75 @@
+-- H2 twin of db/migration/mysql/V1__create_schema.sql, used by the startup benchmark and
+-- tests; keep the two in step.
+CREATE TABLE user (
+  id INTEGER NOT NULL,
+  name VARCHAR(255),
+  gender VARCHAR(255),
+  age INTEGER NOT NULL,
+  email VARCHAR(255),
+  phone VARCHAR(255),
+  vote_num INTEGER NOT NULL,
+  PRIMARY KEY (id)
+);
+
+CREATE SEQUENCE user_id_seq START WITH 1 INCREMENT BY 100;
+
+CREATE TABLE rs_event (
+  id INTEGER NOT NULL AUTO_INCREMENT,
+  event_name VARCHAR(255),
+  keyword VARCHAR(255),
+  vote_num INTEGER NOT NULL,
+  user_id INTEGER,
+  PRIMARY KEY (id),
+  CONSTRAINT fk_rs_event_user FOREIGN KEY (user_id) REFERENCES user (id)
+);
+
+CREATE INDEX idx_rs_event_vote_num_id ON rs_event (vote_num, id);
+
+CREATE TABLE vote (
+  id INTEGER NOT NULL AUTO_INCREMENT,
+  local_date_time TIMESTAMP,
+  num INTEGER NOT NULL,
+  user_id INTEGER,
+  rs_event_id INTEGER,
+  PRIMARY KEY (id),
+  CONSTRAINT fk_vote_user FOREIGN KEY (user_id) REFERENCES user (id),
+  CONSTRAINT fk_vote_rs_event FOREIGN KEY (rs_event_id) REFERENCES rs_event (id)
+);
+
+CREATE INDEX idx_vote_user_event_time ON vote (user_id, rs_event_id, local_date_time);
+
+CREATE TABLE rank_pos (
+  id INTEGER NOT NULL AUTO_INCREMENT,
+  rank_pos INTEGER,
+  price INTEGER,
+  rs_event_id INTEGER,
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE rank_record (
+  id INTEGER NOT NULL AUTO_INCREMENT,
+  rank_pos INTEGER,
+  price INTEGER,
+  rs_event_id INTEGER,
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE vote_snapshot (
+  id INTEGER NOT NULL,
+  last_vote_id INTEGER NOT NULL,
+  observed_vote_id INTEGER NOT NULL,
+  taken_at TIMESTAMP,
+  PRIMARY KEY (id)
+);
+
+CREATE TABLE event_vote_total (
+  rs_event_id INTEGER NOT NULL,
+  votes BIGINT NOT NULL,
+  PRIMARY KEY (rs_event_id)
+);
+
+CREATE TABLE user_vote_total (
+  user_id INTEGER NOT NULL,
+  spent BIGINT NOT NULL,
+  PRIMARY KEY (user_id)
+);
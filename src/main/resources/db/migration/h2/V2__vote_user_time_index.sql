@@ -0,0 +1,2 @@
+-- H2 twin of db/migration/mysql/V2__vote_user_time_index.sql; keep the two in step.
+CREATE INDEX idx_vote_user_time ON vote (user_id, local_date_time);
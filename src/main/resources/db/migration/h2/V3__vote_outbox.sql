@@ -0,0 +1,9 @@
+-- H2 twin of db/migration/mysql/V3__vote_outbox.sql; keep the two in step.
+CREATE TABLE vote_outbox (
+  id BIGINT NOT NULL AUTO_INCREMENT,
+  local_date_time TIMESTAMP,
+  num INTEGER NOT NULL,
+  user_id INTEGER NOT NULL,
+  rs_event_id INTEGER NOT NULL,
+  PRIMARY KEY (id)
+);
@@ -0,0 +1,5 @@
+-- H2 twin of db/migration/mysql/V4__rank_record_journal_position.sql; keep the two in step.
+ALTER TABLE rank_record ADD COLUMN traded_at TIMESTAMP;
+ALTER TABLE rank_record ADD COLUMN journal_segment BIGINT;
+ALTER TABLE rank_record ADD COLUMN journal_index INTEGER;
+CREATE UNIQUE INDEX uk_rank_record_journal ON rank_record (journal_segment, journal_index);
@@ -0,0 +1,78 @@
+-- Schema of the entities in com.thoughtworks.rslist.dto as of the switch from ddl-auto to
+-- migrations; later changes go into new V<n>__*.sql files, never into this one.
+CREATE TABLE user (
+  id INTEGER NOT NULL,
+  name VARCHAR(255),
+  gender VARCHAR(255),
+  age INTEGER NOT NULL,
+  email VARCHAR(255),
+  phone VARCHAR(255),
+  vote_num INTEGER NOT NULL,
+  PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+-- MySQL has no sequences, so Hibernate keeps user_id_seq as a one-row table.
+CREATE TABLE user_id_seq (
+  next_val BIGINT
+) ENGINE = InnoDB;
+
+INSERT INTO user_id_seq VALUES (1);
+
+CREATE TABLE rs_event (
+  id INTEGER NOT NULL AUTO_INCREMENT,
+  event_name VARCHAR(255),
+  keyword VARCHAR(255),
+  vote_num INTEGER NOT NULL,
+  user_id INTEGER,
+  PRIMARY KEY (id),
+  INDEX idx_rs_event_vote_num_id (vote_num, id),
+  CONSTRAINT fk_rs_event_user FOREIGN KEY (user_id) REFERENCES user (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE vote (
+  id INTEGER NOT NULL AUTO_INCREMENT,
+  local_date_time DATETIME(6),
+  num INTEGER NOT NULL,
+  user_id INTEGER,
+  rs_event_id INTEGER,
+  PRIMARY KEY (id),
+  INDEX idx_vote_user_event_time (user_id, rs_event_id, local_date_time),
+  CONSTRAINT fk_vote_user FOREIGN KEY (user_id) REFERENCES user (id),
+  CONSTRAINT fk_vote_rs_event FOREIGN KEY (rs_event_id) REFERENCES rs_event (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE rank_pos (
+  id INTEGER NOT NULL AUTO_INCREMENT,
+  rank_pos INTEGER,
+  price INTEGER,
+  rs_event_id INTEGER,
+  PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE rank_record (
+  id INTEGER NOT NULL AUTO_INCREMENT,
+  rank_pos INTEGER,
+  price INTEGER,
+  rs_event_id INTEGER,
+  PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE vote_snapshot (
+  id INTEGER NOT NULL,
+  last_vote_id INTEGER NOT NULL,
+  observed_vote_id INTEGER NOT NULL,
+  taken_at DATETIME(6),
+  PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE event_vote_total (
+  rs_event_id INTEGER NOT NULL,
+  votes BIGINT NOT NULL,
+  PRIMARY KEY (rs_event_id)
+) ENGINE = InnoDB;
+
+CREATE TABLE user_vote_total (
+  user_id INTEGER NOT NULL,
+  spent BIGINT NOT NULL,
+  PRIMARY KEY (user_id)
+) ENGINE = InnoDB;
@@ -0,0 +1,3 @@
+-- Serves a user's vote history across all events (/voteRecord without rsEventId), which
+-- idx_vote_user_event_time cannot order by time.
+CREATE INDEX idx_vote_user_time ON vote (user_id, local_date_time);
@@ -0,0 +1,9 @@
+-- Votes committed here but not yet copied to the vote shards (rs.vote.shards.urls).
+CREATE TABLE vote_outbox (
+  id BIGINT NOT NULL AUTO_INCREMENT,
+  local_date_time DATETIME(6),
+  num INTEGER NOT NULL,
+  user_id INTEGER NOT NULL,
+  rs_event_id INTEGER NOT NULL,
+  PRIMARY KEY (id)
+) ENGINE = InnoDB;
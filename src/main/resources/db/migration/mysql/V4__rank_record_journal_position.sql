@@ -0,0 +1,7 @@
+-- When each trade happened, and for trades loaded from the trade journal (rs.rank.journal) where
+-- they sat in it, so loading a batch again after a crash skips the records already inserted.
+ALTER TABLE rank_record
+  ADD COLUMN traded_at DATETIME(6),
+  ADD COLUMN journal_segment BIGINT,
+  ADD COLUMN journal_index INTEGER,
+  ADD UNIQUE INDEX uk_rank_record_journal (journal_segment, journal_index);
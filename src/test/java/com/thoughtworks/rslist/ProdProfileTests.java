@@ -0,0 +1,27 @@
+package com.thoughtworks.rslist;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Boots the prod profile on H2, so a migration that no longer matches the entities fails here.
+@SpringBootTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:prod-profile;MODE=MySQL;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password="})
+@ActiveProfiles("prod")
+@AutoConfigureMockMvc
+class ProdProfileTests {
+  @Autowired MockMvc mockMvc;
+
+  @Test
+  void should_validate_migrated_schema_and_answer_first_request() throws Exception {
+    mockMvc.perform(get("/rs/list")).andExpect(status().isOk());
+  }
+}
@@ -0,0 +1,70 @@
+package com.thoughtworks.rslist.api;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.RankDtoRepository;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDateTime;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The replica is an empty database, so a read routed there fails instead of returning stale rows.
+@SpringBootTest(properties = {
+    "rs.datasource.replica.url=jdbc:h2:mem:empty-replica;DB_CLOSE_DELAY=-1",
+    "rs.datasource.replica.username=sa",
+    "rs.datasource.replica.max-lag-ms=60000"})
+@AutoConfigureMockMvc
+class ReadYourWritesTest {
+  @Autowired MockMvc mockMvc;
+  @Autowired UserRepository userRepository;
+  @Autowired RsEventRepository rsEventRepository;
+  @Autowired VoteRepository voteRepository;
+  @Autowired RankDtoRepository rankDtoRepository;
+
+  @BeforeEach
+  void setUp() {
+    voteRepository.deleteAll();
+    rankDtoRepository.deleteAll();
+    rsEventRepository.deleteAll();
+    userRepository.deleteAll();
+  }
+
+  @Test
+  void should_read_own_vote_from_primary_right_after_voting() throws Exception {
+    UserDto user = userRepository.save(UserDto.builder().userName("idolice").gender("female").age(19)
+        .email("a@b.com").phone("18888888888").voteNum(10).build());
+    RsEventDto rsEventDto = rsEventRepository.save(
+        RsEventDto.builder().keyword("keyword").eventName("event").user(user).build());
+    String vote = String.format(
+        "{\"userId\":%d,\"time\":\"%s\",\"voteNum\":2}", user.getId(), LocalDateTime.now().toString());
+
+    MvcResult result = mockMvc.perform(post("/rs/vote/{id}", rsEventDto.getId())
+        .content(vote).contentType(MediaType.APPLICATION_JSON))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+    mockMvc.perform(get("/voteRecord").param("userId", String.valueOf(user.getId())).param("pageIndex", "1"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(1)))
+        .andExpect(jsonPath("$[0].voteNum", is(2)));
+  }
+}
@@ -12,16 +12,23 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -86,6 +93,24 @@ class RsControllerTest {
     mockMvc.perform(get("/rs/2")).andExpect(jsonPath("$.keyword", is("无分类")));
   }
 
+  @Test
+  public void should_get_top_k_with_paid_ranks_in_place() throws Exception {
+    UserDto save = userRepository.save(userDto);
+    RsEventDto first = rsEventRepository.save(
+        RsEventDto.builder().keyword("无分类").eventName("第一条事件").voteNum(1).user(save).build());
+    rsEventRepository.save(RsEventDto.builder().keyword("无分类").eventName("第二条事件").voteNum(5).user(save).build());
+    rsEventRepository.save(RsEventDto.builder().keyword("无分类").eventName("第三条事件").voteNum(3).user(save).build());
+    rankDtoRepository.save(RankDto.builder().rankPos(1).price(10).rsEventId(first.getId()).build());
+
+    mockMvc.perform(get("/rs/top?k=2"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(2)))
+        .andExpect(jsonPath("$[0].eventName", is("第一条事件")))
+        .andExpect(jsonPath("$[1].eventName", is("第二条事件")));
+    mockMvc.perform(get("/rs/top?k=10")).andExpect(jsonPath("$", hasSize(3)));
+    mockMvc.perform(get("/rs/top?k=0")).andExpect(status().isBadRequest());
+  }
+
   @Test
   public void shouldGetErrorWhenIndexInvalid() throws Exception {
     mockMvc
@@ -184,6 +209,49 @@ class RsControllerTest {
     assertEquals(voteDtos.get(0).getNum(), 1);
   }
 
+  @Test
+  void should_count_a_retried_vote_with_the_same_idempotency_key_once() throws Exception {
+    UserDto save = userRepository.save(userDto);
+    RsEventDto rsEventDto = rsEventRepository.save(
+        RsEventDto.builder().keyword("无分类").eventName("第一条事件").user(save).build());
+    String jsonValue = String.format(
+        "{\"userId\":%d,\"time\":\"%s\",\"voteNum\":2}", save.getId(), LocalDateTime.now().toString());
+
+    for (int i = 0; i < 2; i++) {
+      MvcResult result = mockMvc.perform(post("/rs/vote/{id}", rsEventDto.getId())
+          .header("Idempotency-Key", "vote-1").content(jsonValue).contentType(MediaType.APPLICATION_JSON))
+          .andExpect(request().asyncStarted())
+          .andReturn();
+      mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+    }
+
+    assertEquals(8, userRepository.findById(save.getId()).get().getVoteNum());
+    assertEquals(2, rsEventRepository.findById(rsEventDto.getId()).get().getVoteNum());
+    assertEquals(1, voteRepository.count());
+  }
+
+  @Test
+  void should_refuse_an_idempotency_key_reused_for_a_different_vote() throws Exception {
+    UserDto save = userRepository.save(userDto);
+    RsEventDto rsEventDto = rsEventRepository.save(
+        RsEventDto.builder().keyword("无分类").eventName("第一条事件").user(save).build());
+    String time = LocalDateTime.now().toString();
+
+    MvcResult result = mockMvc.perform(post("/rs/vote/{id}", rsEventDto.getId()).header("Idempotency-Key", "vote-1")
+        .content(String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":2}", save.getId(), time))
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+    mockMvc.perform(post("/rs/vote/{id}", rsEventDto.getId()).header("Idempotency-Key", "vote-1")
+        .content(String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":3}", save.getId(), time))
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isUnprocessableEntity());
+
+    assertEquals(8, userRepository.findById(save.getId()).get().getVoteNum());
+    assertEquals(1, voteRepository.count());
+  }
+
   @Test
   void should_get_specified_rank_and_origin_event_not_be_deleted_when_price_of_rank_is_zero() throws Exception {
     UserDto userDtoTestData = UserDto.builder().userName("user").gender("male").age(20).email("user@gmail.com")
@@ -380,4 +448,173 @@ class RsControllerTest {
     mockMvc.perform(post("/rs/buy/2").contentType(MediaType.APPLICATION_JSON)
             .content(objectMapper.writeValueAsBytes(trade2))).andExpect(status().isBadRequest());
   }
+
+  @Test
+  void should_rate_limit_votes_by_address_whatever_user_id_is_sent() throws Exception {
+    UserDto save = userRepository.save(userDto);
+    RsEventDto rsEventDto = rsEventRepository.save(
+        RsEventDto.builder().keyword("无分类").eventName("第一条事件").user(save).build());
+    String time = LocalDateTime.now().toString();
+    for (int userId = 1; userId <= 20; userId++) {
+      mockMvc.perform(post("/rs/vote/{id}", rsEventDto.getId())
+          .content(String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":1}", save.getId() + userId, time))
+          .contentType(MediaType.APPLICATION_JSON))
+          .andExpect(result -> assertNotEquals(429, result.getResponse().getStatus()));
+    }
+
+    mockMvc.perform(post("/rs/vote/{id}", rsEventDto.getId())
+        .content(String.format("{\"userId\":%d,\"time\":\"%s\",\"voteNum\":1}", save.getId(), time))
+        .contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isTooManyRequests())
+        .andExpect(header().exists("Retry-After"));
+    assertEquals(10, userRepository.findById(save.getId()).get().getVoteNum());
+    assertEquals(0, voteRepository.count());
+  }
+
+  @Test
+  void should_rate_limit_buys_by_address_whatever_user_header_is_sent() throws Exception {
+    UserDto save = userRepository.save(userDto);
+    RsEventDto rsEventDto = rsEventRepository.save(
+        RsEventDto.builder().eventName("event1").keyword("keyword").user(save).build());
+    ObjectMapper objectMapper = new ObjectMapper();
+    for (int amount = 1; amount <= 5; amount++) {
+      mockMvc.perform(post("/rs/buy/{id}", rsEventDto.getId()).header("X-User-Id", String.valueOf(amount))
+          .contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsBytes(new Trade(amount, 1))))
+          .andExpect(status().isOk());
+    }
+
+    mockMvc.perform(post("/rs/buy/{id}", rsEventDto.getId()).header("X-User-Id", "6")
+        .contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsBytes(new Trade(6, 1))))
+        .andExpect(status().isTooManyRequests())
+        .andExpect(header().exists("Retry-After"));
+    assertEquals(5, rankDtoRepository.findAll().get(0).getPrice());
+  }
+
+  @Test
+  void should_page_ranking_from_database_by_cursor_and_keep_paid_rank_in_place() throws Exception {
+    UserDto save = userRepository.save(userDto);
+    rsEventRepository.save(RsEventDto.builder().eventName("event1").keyword("keyword").voteNum(10).user(save).build());
+    rsEventRepository.save(RsEventDto.builder().eventName("event2").keyword("keyword").voteNum(0).user(save).build());
+    rsEventRepository.save(RsEventDto.builder().eventName("event3").keyword("keyword").voteNum(5).user(save).build());
+    rsEventRepository.save(RsEventDto.builder().eventName("event4").keyword("keyword").voteNum(7).user(save).build());
+    ObjectMapper objectMapper = new ObjectMapper();
+    mockMvc.perform(post("/rs/buy/2").contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsBytes(new Trade(100, 2)))).andExpect(status().isOk());
+
+    mockMvc.perform(get("/rs/list?start=2&end=3&cursor=10,1"))
+            .andExpect(jsonPath("$", hasSize(2)))
+            .andExpect(jsonPath("$[0].eventName", is("event2")))
+            .andExpect(jsonPath("$[1].eventName", is("event4")))
+            .andExpect(header().string("X-Next-Cursor", "7,4"))
+            .andExpect(status().isOk());
+    mockMvc.perform(get("/rs/list?start=4&end=4&cursor=7,4"))
+            .andExpect(jsonPath("$", hasSize(1)))
+            .andExpect(jsonPath("$[0].eventName", is("event3")))
+            .andExpect(header().string("X-Next-Cursor", "5,3"))
+            .andExpect(status().isOk());
+    mockMvc.perform(get("/rs/list?start=1&end=1&cursor=abc"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.error", is("invalid cursor")));
+  }
+
+  @Test
+  void should_answer_not_modified_until_ranking_changes() throws Exception {
+    UserDto save = userRepository.save(userDto);
+    RsEventDto rsEventDto = rsEventRepository.save(
+        RsEventDto.builder().keyword("无分类").eventName("第一条事件").user(save).build());
+
+    String eTag = mockMvc.perform(get("/rs/list?start=1&end=1"))
+        .andExpect(status().isOk())
+        .andExpect(header().exists("ETag"))
+        .andReturn().getResponse().getHeader("ETag");
+    mockMvc.perform(get("/rs/list?start=1&end=1").header("If-None-Match", eTag))
+        .andExpect(status().isNotModified());
+
+    String jsonValue = String.format(
+        "{\"userId\":%d,\"time\":\"%s\",\"voteNum\":1}", save.getId(), LocalDateTime.now().toString());
+    mockMvc.perform(post("/rs/vote/{id}", rsEventDto.getId()).content(jsonValue).contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+
+    mockMvc.perform(get("/rs/list?start=1&end=1").header("If-None-Match", eTag))
+        .andExpect(status().isOk())
+        .andExpect(header().string("ETag", not(eTag)))
+        .andExpect(jsonPath("$[0].voteNum", is(1)));
+  }
+
+  @Test
+  void should_record_vote_outcomes_in_metrics() throws Exception {
+    UserDto save = userRepository.save(userDto);
+    RsEventDto rsEventDto = rsEventRepository.save(
+        RsEventDto.builder().keyword("无分类").eventName("第一条事件").user(save).build());
+    String jsonValue = String.format(
+        "{\"userId\":%d,\"time\":\"%s\",\"voteNum\":1}", save.getId(), LocalDateTime.now().toString());
+    mockMvc.perform(post("/rs/vote/{id}", rsEventDto.getId()).content(jsonValue).contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk());
+
+    mockMvc.perform(get("/actuator/metrics/rs.vote").param("tag", "outcome:success"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.measurements[0].statistic", is("COUNT")))
+        .andExpect(jsonPath("$.measurements[0].value", is(1.0)));
+    mockMvc.perform(get("/actuator/metrics/rs.repository").param("tag", "repository:UserRepository"))
+        .andExpect(status().isOk());
+  }
+
+  @Test
+  void should_stream_whole_ranking_as_ndjson() throws Exception {
+    UserDto save = userRepository.save(userDto);
+    rsEventRepository.save(RsEventDto.builder().eventName("event1").keyword("keyword").voteNum(10).user(save).build());
+    rsEventRepository.save(RsEventDto.builder().eventName("event2").keyword("keyword").voteNum(0).user(save).build());
+    rsEventRepository.save(RsEventDto.builder().eventName("event3").keyword("keyword").voteNum(5).user(save).build());
+    ObjectMapper objectMapper = new ObjectMapper();
+    mockMvc.perform(post("/rs/buy/2").contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsBytes(new Trade(100, 1)))).andExpect(status().isOk());
+
+    MvcResult result = mockMvc.perform(get("/rs/list/stream"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    String[] lines = mockMvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType("application/x-ndjson"))
+        .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n");
+
+    assertEquals(3, lines.length);
+    assertEquals("event2", objectMapper.readTree(lines[0]).get("eventName").asText());
+    assertEquals("event1", objectMapper.readTree(lines[1]).get("eventName").asText());
+    assertEquals("event3", objectMapper.readTree(lines[2]).get("eventName").asText());
+  }
+
+  @Test
+  void should_vote_in_bulk_and_report_each_vote() throws Exception {
+    UserDto save = userRepository.save(userDto);
+    RsEventDto event1 = rsEventRepository.save(
+        RsEventDto.builder().eventName("event1").keyword("keyword").voteNum(0).user(save).build());
+    RsEventDto event2 = rsEventRepository.save(
+        RsEventDto.builder().eventName("event2").keyword("keyword").voteNum(0).user(save).build());
+    String time = LocalDateTime.now().toString();
+    String votes = String.format("["
+            + "{\"userId\":%1$d,\"rsEventId\":%2$d,\"time\":\"%4$s\",\"voteNum\":3},"
+            + "{\"userId\":%1$d,\"rsEventId\":%3$d,\"time\":\"%4$s\",\"voteNum\":5},"
+            + "{\"userId\":%1$d,\"rsEventId\":%3$d,\"time\":\"%4$s\",\"voteNum\":5},"
+            + "{\"userId\":%1$d,\"rsEventId\":999,\"time\":\"%4$s\",\"voteNum\":1}]",
+        save.getId(), event1.getId(), event2.getId(), time);
+
+    mockMvc.perform(post("/rs/votes?allOrNothing=true").content(votes).contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$[0].accepted", is(false)))
+        .andExpect(jsonPath("$[3].error", is("event not found")));
+    assertEquals(0, voteRepository.count());
+
+    mockMvc.perform(post("/rs/votes").content(votes).contentType(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(4)))
+        .andExpect(jsonPath("$[0].accepted", is(true)))
+        .andExpect(jsonPath("$[1].accepted", is(true)))
+        .andExpect(jsonPath("$[2].accepted", is(false)))
+        .andExpect(jsonPath("$[2].error", is("not enough votes")))
+        .andExpect(jsonPath("$[3].error", is("event not found")));
+    assertEquals(2, voteRepository.count());
+    assertEquals(2, userRepository.findById(save.getId()).get().getVoteNum());
+    assertEquals(3, rsEventRepository.findById(event1.getId()).get().getVoteNum());
+    assertEquals(5, rsEventRepository.findById(event2.getId()).get().getVoteNum());
+  }
 }
@@ -1,11 +1,15 @@
 package com.thoughtworks.rslist.api;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thoughtworks.rslist.domain.Trade;
 import com.thoughtworks.rslist.domain.User;
+import com.thoughtworks.rslist.dto.RankDto;
 import com.thoughtworks.rslist.dto.RsEventDto;
 import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.RankDtoRepository;
 import com.thoughtworks.rslist.repository.RsEventRepository;
 import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,11 +18,16 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -28,10 +37,14 @@ class UserControllerTest {
   ObjectMapper objectMapper;
   @Autowired UserRepository userRepository;
   @Autowired RsEventRepository rsEventRepository;
+  @Autowired VoteRepository voteRepository;
+  @Autowired RankDtoRepository rankDtoRepository;
 
   @BeforeEach
   void setUp() {
     objectMapper = new ObjectMapper();
+    voteRepository.deleteAll();
+    rankDtoRepository.deleteAll();
     rsEventRepository.deleteAll();
     userRepository.deleteAll();
   }
@@ -124,4 +137,82 @@ class UserControllerTest {
     assertEquals(userRepository.findAll().size(), 0);
     assertEquals(rsEventRepository.findAll().size(), 0);
   }
+
+  @Test
+  public void shouldDeleteUserWithVotesAndRankSlots() throws Exception {
+    UserDto user = userRepository.save(UserDto.builder().userName("idolice").gender("female").age(19)
+        .email("a@b.com").phone("18888888888").voteNum(10).build());
+    UserDto voter = userRepository.save(UserDto.builder().userName("voter").gender("female").age(19)
+        .email("a@b.com").phone("18888888888").voteNum(10).build());
+    RsEventDto own = rsEventRepository.save(
+        RsEventDto.builder().keyword("keyword").eventName("own").voteNum(3).user(user).build());
+    RsEventDto other = rsEventRepository.save(
+        RsEventDto.builder().keyword("keyword").eventName("other").voteNum(2).user(voter).build());
+    voteRepository.insertVote(LocalDateTime.now(), 3, voter.getId(), own.getId());
+    voteRepository.insertVote(LocalDateTime.now(), 2, user.getId(), other.getId());
+    voter.setVoteNum(7);
+    userRepository.save(voter);
+    rankDtoRepository.save(RankDto.builder().rankPos(1).price(10).rsEventId(own.getId()).build());
+
+    mockMvc.perform(delete("/user/{id}", user.getId())).andExpect(status().isOk());
+
+    assertFalse(userRepository.existsById(user.getId()));
+    assertFalse(rsEventRepository.existsById(own.getId()));
+    assertEquals(0, voteRepository.count());
+    assertEquals(0, rankDtoRepository.count());
+    assertEquals(10, userRepository.findById(voter.getId()).get().getVoteNum());
+    assertEquals(0, rsEventRepository.findById(other.getId()).get().getVoteNum());
+  }
+
+  @Test
+  public void shouldLetOthersBuyRankOfDeletedUserAtLowerPrice() throws Exception {
+    UserDto user = userRepository.save(UserDto.builder().userName("idolice").gender("female").age(19)
+        .email("a@b.com").phone("18888888888").voteNum(10).build());
+    UserDto buyer = userRepository.save(UserDto.builder().userName("buyer").gender("female").age(19)
+        .email("a@b.com").phone("18888888888").voteNum(10).build());
+    RsEventDto own = rsEventRepository.save(
+        RsEventDto.builder().keyword("keyword").eventName("own").user(user).build());
+    RsEventDto other = rsEventRepository.save(
+        RsEventDto.builder().keyword("keyword").eventName("other").user(buyer).build());
+    mockMvc.perform(post("/rs/buy/{id}", own.getId()).contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsBytes(new Trade(100, 1)))).andExpect(status().isOk());
+
+    mockMvc.perform(delete("/user/{id}", user.getId())).andExpect(status().isOk());
+    mockMvc.perform(post("/rs/buy/{id}", other.getId()).contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsBytes(new Trade(10, 1)))).andExpect(status().isOk());
+
+    List<RankDto> ranks = rankDtoRepository.findAll();
+    assertEquals(1, ranks.size());
+    assertEquals(10, ranks.get(0).getPrice());
+    assertEquals(other.getId(), ranks.get(0).getRsEventId());
+  }
+
+  @Test
+  public void shouldNotDeleteUserThatDoesNotExist() throws Exception {
+    mockMvc.perform(delete("/user/{id}", 999)).andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void shouldRegisterUsersInBulk() throws Exception {
+    List<User> users = new ArrayList<>();
+    for (int i = 0; i < 250; i++) {
+      users.add(new User("user" + i, "female", 19, "a@b.com", "18888888888"));
+    }
+    mockMvc
+        .perform(post("/users").contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(users)))
+        .andExpect(status().isCreated());
+    assertEquals(250, userRepository.count());
+  }
+
+  @Test
+  public void shouldNotRegisterAnyUserWhenOneIsInvalid() throws Exception {
+    List<User> users = new ArrayList<>();
+    users.add(new User("idolice", "female", 19, "a@b.com", "18888888888"));
+    users.add(new User("idolice", "female", 17, "a@b.com", "18888888888"));
+    mockMvc
+        .perform(post("/users").contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(users)))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.error", startsWith("invalid user at index 1: age")));
+    assertEquals(0, userRepository.count());
+  }
 }
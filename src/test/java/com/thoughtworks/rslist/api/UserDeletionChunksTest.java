@@ -0,0 +1,85 @@
+package com.thoughtworks.rslist.api;
+
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.RankDtoRepository;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// One event per chunk, so every event and every event the user voted on takes its own transaction.
+@SpringBootTest(properties = "rs.user.delete.chunk-size=1")
+@AutoConfigureMockMvc
+class UserDeletionChunksTest {
+  @Autowired MockMvc mockMvc;
+  @Autowired UserRepository userRepository;
+  @Autowired RsEventRepository rsEventRepository;
+  @Autowired VoteRepository voteRepository;
+  @Autowired RankDtoRepository rankDtoRepository;
+
+  @BeforeEach
+  void setUp() {
+    voteRepository.deleteAll();
+    rankDtoRepository.deleteAll();
+    rsEventRepository.deleteAll();
+    userRepository.deleteAll();
+  }
+
+  @Test
+  public void shouldDeleteUserInChunksWhenAsync() throws Exception {
+    UserDto user = userRepository.save(user("idolice", 5));
+    UserDto first = userRepository.save(user("first", 10));
+    UserDto second = userRepository.save(user("second", 10));
+    RsEventDto[] own = new RsEventDto[3];
+    for (int i = 0; i < own.length; i++) {
+      own[i] = rsEventRepository.save(
+          RsEventDto.builder().keyword("keyword").eventName("own" + i).voteNum(3).user(user).build());
+      voteRepository.insertVote(LocalDateTime.now(), 2, first.getId(), own[i].getId());
+      voteRepository.insertVote(LocalDateTime.now(), 1, second.getId(), own[i].getId());
+    }
+    first.setVoteNum(2);
+    userRepository.save(first);
+    second.setVoteNum(5);
+    userRepository.save(second);
+    RsEventDto firstOther = rsEventRepository.save(
+        RsEventDto.builder().keyword("keyword").eventName("firstOther").voteNum(5).user(first).build());
+    RsEventDto secondOther = rsEventRepository.save(
+        RsEventDto.builder().keyword("keyword").eventName("secondOther").voteNum(4).user(second).build());
+    voteRepository.insertVote(LocalDateTime.now(), 3, user.getId(), firstOther.getId());
+    voteRepository.insertVote(LocalDateTime.now(), 2, first.getId(), firstOther.getId());
+    voteRepository.insertVote(LocalDateTime.now(), 1, user.getId(), secondOther.getId());
+    voteRepository.insertVote(LocalDateTime.now(), 1, user.getId(), secondOther.getId());
+    voteRepository.insertVote(LocalDateTime.now(), 2, second.getId(), secondOther.getId());
+
+    mockMvc.perform(delete("/user/{id}", user.getId()).param("async", "true")).andExpect(status().isAccepted());
+
+    for (int i = 0; i < 100 && userRepository.existsById(user.getId()); i++) {
+      Thread.sleep(50);
+    }
+    assertFalse(userRepository.existsById(user.getId()));
+    assertEquals(2, rsEventRepository.count());
+    assertEquals(2, voteRepository.count());
+    assertEquals(8, userRepository.findById(first.getId()).get().getVoteNum());
+    assertEquals(8, userRepository.findById(second.getId()).get().getVoteNum());
+    assertEquals(2, rsEventRepository.findById(firstOther.getId()).get().getVoteNum());
+    assertEquals(2, rsEventRepository.findById(secondOther.getId()).get().getVoteNum());
+  }
+
+  private static UserDto user(String userName, int voteNum) {
+    return UserDto.builder().userName(userName).gender("female").age(19)
+        .email("a@b.com").phone("18888888888").voteNum(voteNum).build();
+  }
+}
@@ -6,6 +6,9 @@ import com.thoughtworks.rslist.dto.VoteDto;
 import com.thoughtworks.rslist.repository.RsEventRepository;
 import com.thoughtworks.rslist.repository.UserRepository;
 import com.thoughtworks.rslist.repository.VoteRepository;
+import com.thoughtworks.rslist.service.VoteLedgerService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,11 +17,15 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
 
+import javax.persistence.EntityManagerFactory;
 import java.time.LocalDateTime;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.hamcrest.Matchers.is;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 
 @SpringBootTest
@@ -31,6 +38,10 @@ class VoteControllerTest {
     RsEventRepository rsEventRepository;
     @Autowired
     VoteRepository voteRepository;
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+    @Autowired
+    VoteLedgerService voteLedgerService;
     UserDto userDto;
     RsEventDto rsEventDto;
 
@@ -107,4 +118,45 @@ class VoteControllerTest {
 
 
     }
+
+    @Test
+    public void shouldLoadOnePageOfVoteRecordWithOneStatement() throws Exception {
+      for (int i = 0; i < 5; i++) {
+        voteRepository.save(VoteDto.builder().user(userDto).rsEvent(rsEventDto).localDateTime(LocalDateTime.now())
+                .num(i).build());
+      }
+      Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+      statistics.clear();
+
+      mockMvc.perform(get("/voteRecord").param("userId",String.valueOf(userDto.getId()))
+              .param("rsEventId",String.valueOf(rsEventDto.getId())).param("pageIndex", "1"))
+              .andExpect(jsonPath("$", hasSize(5)));
+
+      assertEquals(1, statistics.getPrepareStatementCount());
+      assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    public void shouldReportAndRebuildCountersThatDriftFromVotes() throws Exception {
+      voteLedgerService.snapshot();
+      voteLedgerService.snapshot();
+      voteRepository.save(VoteDto.builder().user(userDto).rsEvent(rsEventDto).localDateTime(LocalDateTime.now())
+              .num(2).build());
+      String event = String.format("$[?(@.type == 'EVENT' && @.id == %d)]", rsEventDto.getId());
+      String user = String.format("$[?(@.type == 'USER' && @.id == %d)]", userDto.getId());
+
+      mockMvc.perform(get("/voteLedger/check"))
+              .andExpect(jsonPath(event + ".expected", contains(7)))
+              .andExpect(jsonPath(event + ".actual", contains(0)))
+              .andExpect(jsonPath(user + ".expected", contains(3)))
+              .andExpect(jsonPath(user + ".actual", contains(10)));
+
+      mockMvc.perform(post("/voteLedger/rebuild"))
+              .andExpect(jsonPath(event, hasSize(1)));
+      mockMvc.perform(get("/voteLedger/check"))
+              .andExpect(jsonPath(event, hasSize(0)))
+              .andExpect(jsonPath(user, hasSize(0)));
+      assertEquals(7, rsEventRepository.findById(rsEventDto.getId()).get().getVoteNum());
+      assertEquals(3, userRepository.findById(userDto.getId()).get().getVoteNum());
+    }
 }
@@ -0,0 +1,72 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.exception.IdempotencyKeyReusedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyCacheTest {
+  AtomicLong now = new AtomicLong();
+  IdempotencyCache idempotencyCache = new IdempotencyCache(1000, 2, now::get);
+  AtomicInteger writes = new AtomicInteger();
+
+  @Test
+  void should_coalesce_duplicates_onto_the_pending_write() {
+    CompletableFuture<String> pending = new CompletableFuture<>();
+    CompletableFuture<String> first = idempotencyCache.execute("vote:1", "key", "1", () -> {
+      writes.incrementAndGet();
+      return pending;
+    });
+    CompletableFuture<String> duplicate = idempotencyCache.execute("vote:1", "key", "1", this::write);
+
+    assertFalse(duplicate.isDone());
+    pending.complete("ok");
+    assertEquals("ok", duplicate.join());
+    assertEquals("ok", first.join());
+    assertEquals(1, writes.get());
+
+    idempotencyCache.execute("vote:2", "key", "1", this::write);
+    assertEquals(2, writes.get());
+  }
+
+  @Test
+  void should_run_again_after_a_failure_or_once_the_key_expired() {
+    CompletableFuture<String> failed = idempotencyCache.execute("vote:1", "key", "1", () -> {
+      writes.incrementAndGet();
+      CompletableFuture<String> result = new CompletableFuture<>();
+      result.completeExceptionally(new IllegalStateException());
+      return result;
+    });
+    assertTrue(failed.isCompletedExceptionally());
+
+    idempotencyCache.execute("vote:1", "key", "1", this::write);
+    idempotencyCache.execute("vote:1", "key", "1", this::write);
+    assertEquals(2, writes.get());
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+    idempotencyCache.execute("vote:1", "key", "1", this::write);
+    assertEquals(3, writes.get());
+  }
+
+  @Test
+  void should_refuse_a_key_reused_for_a_different_request() {
+    idempotencyCache.execute("vote:1", "key", "1", this::write);
+
+    assertThrows(IdempotencyKeyReusedException.class,
+        () -> idempotencyCache.execute("vote:1", "key", "2", this::write));
+    assertEquals(1, writes.get());
+  }
+
+  private CompletableFuture<String> write() {
+    writes.incrementAndGet();
+    return CompletableFuture.completedFuture("ok");
+  }
+}
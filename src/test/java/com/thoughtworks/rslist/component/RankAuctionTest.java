@@ -0,0 +1,118 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.dto.RankDto;
+import com.thoughtworks.rslist.exception.FailedToBuyRankException;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.repository.RankDtoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class RankAuctionTest {
+  RankAuction rankAuction;
+
+  @Mock RankDtoRepository rankDtoRepository;
+  List<RankAuction.Bid> persisted;
+
+  @BeforeEach
+  void setUp() {
+    initMocks(this);
+    when(rankDtoRepository.findAll()).thenReturn(Collections.singletonList(new RankDto(1, 1, 100, 3)));
+    rankAuction = new RankAuction(rankDtoRepository, 10, "sync");
+    persisted = Collections.synchronizedList(new ArrayList<>());
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    rankAuction.stop();
+  }
+
+  @Test
+  void should_recover_ranks_and_only_accept_higher_bids() {
+    assertEquals(3, rankAuction.get(1).getRsEventId());
+    assertThrows(FailedToBuyRankException.class, () -> rankAuction.bid(1, 100, 2, persisted::add));
+
+    rankAuction.bid(1, 101, 2, persisted::add);
+
+    assertEquals(2, rankAuction.get(1).getRsEventId());
+    assertEquals(1, persisted.size());
+    assertThrows(RequestNotValidException.class, () -> rankAuction.bid(11, 100, 2, persisted::add));
+  }
+
+  @Test
+  void should_let_a_lower_bid_win_a_released_rank() {
+    assertThrows(FailedToBuyRankException.class, () -> rankAuction.bid(1, 50, 2, persisted::add));
+
+    rankAuction.release(Collections.singletonList(3));
+    rankAuction.bid(1, 50, 2, persisted::add);
+
+    assertEquals(2, rankAuction.get(1).getRsEventId());
+    assertEquals(50, rankAuction.get(1).getPrice());
+  }
+
+  @Test
+  void should_give_rank_back_when_an_async_bid_fails_to_persist() throws InterruptedException {
+    rankAuction.stop();
+    rankAuction = new RankAuction(rankDtoRepository, 10, "async");
+    RankAuction.Bid bid = rankAuction.bid(1, 200, 5, failed -> {
+      throw new IllegalStateException("database down");
+    });
+    rankAuction.bid(2, 50, 5, failed -> {
+      throw new IllegalStateException("database down");
+    });
+
+    assertEquals(200, bid.getPrice());
+    rankAuction.stop();
+    assertEquals(3, rankAuction.get(1).getRsEventId());
+    assertNull(rankAuction.get(2));
+  }
+
+  @Test
+  void should_persist_winning_bids_in_rising_order_under_contention() throws Exception {
+    List<Callable<Boolean>> bids = new ArrayList<>();
+    for (int price = 1; price <= 2000; price++) {
+      int amount = price;
+      bids.add(() -> {
+        try {
+          rankAuction.bid(2, amount, amount, persisted::add);
+          return true;
+        } catch (FailedToBuyRankException e) {
+          return false;
+        }
+      });
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    int won = 0;
+    try {
+      for (Future<Boolean> future : executor.invokeAll(bids)) {
+        if (future.get()) {
+          won++;
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(2000, rankAuction.get(2).getPrice());
+    assertEquals(won, persisted.size());
+    for (int i = 1; i < persisted.size(); i++) {
+      assertTrue(persisted.get(i - 1).getPrice() < persisted.get(i).getPrice());
+    }
+  }
+}
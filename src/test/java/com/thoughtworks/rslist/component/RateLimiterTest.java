@@ -0,0 +1,52 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.exception.RateLimitedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RateLimiterTest {
+  AtomicLong now;
+  RateLimiter rateLimiter;
+
+  @BeforeEach
+  void setUp() {
+    now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    rateLimiter = new RateLimiter(true, 2, 3, 0.5, 1, 0, now::get);
+  }
+
+  @Test
+  void should_allow_a_burst_then_refill_at_the_configured_rate() {
+    for (int i = 0; i < 3; i++) {
+      rateLimiter.acquire(RateLimiter.Endpoint.VOTE, "user:1");
+    }
+    RateLimitedException e = assertThrows(RateLimitedException.class,
+        () -> rateLimiter.acquire(RateLimiter.Endpoint.VOTE, "user:1"));
+    assertEquals(1, e.getRetryAfterSeconds());
+    rateLimiter.acquire(RateLimiter.Endpoint.VOTE, "user:2");
+
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+    rateLimiter.acquire(RateLimiter.Endpoint.VOTE, "user:1");
+
+    rateLimiter.acquire(RateLimiter.Endpoint.BUY, "user:1");
+    e = assertThrows(RateLimitedException.class, () -> rateLimiter.acquire(RateLimiter.Endpoint.BUY, "user:1"));
+    assertEquals(2, e.getRetryAfterSeconds());
+    assertEquals(1, rateLimiter.getRejectedCount(RateLimiter.Endpoint.VOTE));
+    assertEquals(1, rateLimiter.getRejectedCount(RateLimiter.Endpoint.BUY));
+  }
+
+  @Test
+  void should_evict_only_buckets_that_have_refilled() {
+    rateLimiter.acquire(RateLimiter.Endpoint.VOTE, "user:1");
+    now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    rateLimiter.acquire(RateLimiter.Endpoint.VOTE, "user:2");
+
+    assertEquals(1, rateLimiter.evictIdle());
+    assertEquals(1, rateLimiter.getBucketCount());
+  }
+}
@@ -0,0 +1,68 @@
+package com.thoughtworks.rslist.component;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReplicaRoutingDataSourceTest {
+  JdbcTemplate jdbcTemplate;
+  TransactionTemplate readWrite;
+  TransactionTemplate readOnly;
+
+  @BeforeEach
+  void setUp() {
+    DataSource dataSource = ReplicaRoutingDataSource.lazy(h2("primary"), h2("replica"), new ReadRouting(60_000));
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+    readWrite = new TransactionTemplate(transactionManager);
+    readOnly = new TransactionTemplate(transactionManager);
+    readOnly.setReadOnly(true);
+  }
+
+  @AfterEach
+  void tearDown() {
+    ReadRouting.clear();
+  }
+
+  @Test
+  void should_send_read_only_transactions_to_replica() {
+    assertEquals("replica", readOnly.execute(status -> node()));
+    assertEquals("primary", readWrite.execute(status -> node()));
+    assertEquals("primary", node());
+
+    ReadRouting.onPrimary(() -> assertEquals("primary", readOnly.execute(status -> node())));
+  }
+
+  @Test
+  void should_keep_reads_of_a_user_on_primary_right_after_their_write() {
+    ReadRouting.setCurrentUser(1);
+    assertEquals("replica", readOnly.execute(status -> node()));
+
+    readWrite.executeWithoutResult(status -> jdbcTemplate.update("UPDATE node SET name = name"));
+
+    assertEquals("primary", readOnly.execute(status -> node()));
+    ReadRouting.setCurrentUser(2);
+    assertEquals("replica", readOnly.execute(status -> node()));
+  }
+
+  private String node() {
+    return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+  }
+
+  private static DataSource h2(String name) {
+    DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+    jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(16))");
+    jdbcTemplate.update("DELETE FROM node");
+    jdbcTemplate.update("INSERT INTO node (name) VALUES (?)", name);
+    return dataSource;
+  }
+}
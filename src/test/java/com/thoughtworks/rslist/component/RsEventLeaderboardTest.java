@@ -0,0 +1,152 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.domain.RsEvent;
+import com.thoughtworks.rslist.dto.RankDto;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.exception.RequestNotValidException;
+import com.thoughtworks.rslist.repository.RankDtoRepository;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class RsEventLeaderboardTest {
+  RsEventLeaderboard rsEventLeaderboard;
+
+  @Mock RsEventRepository rsEventRepository;
+  @Mock RankDtoRepository rankDtoRepository;
+  UserDto userDto;
+
+  @BeforeEach
+  void setUp() {
+    initMocks(this);
+    rsEventLeaderboard = new RsEventLeaderboard(rsEventRepository, rankDtoRepository);
+    userDto = UserDto.builder().id(1).userName("user").build();
+    List<RsEventDto> rsEventDtos = new ArrayList<>();
+    rsEventDtos.add(event(1, "event1", 10));
+    rsEventDtos.add(event(2, "event2", 0));
+    rsEventDtos.add(event(3, "event3", 5));
+    when(rsEventRepository.findAll()).thenReturn(rsEventDtos);
+    when(rankDtoRepository.findAll()).thenReturn(new ArrayList<>());
+  }
+
+  @Test
+  void should_order_events_by_vote_num_and_load_repositories_only_once() {
+    assertEquals(Arrays.asList("event1", "event3", "event2"), names(rsEventLeaderboard.getAll()));
+    assertEquals(Arrays.asList("event3", "event2"), names(rsEventLeaderboard.getBetween(2, 3)));
+
+    verify(rsEventRepository, times(1)).findAll();
+    verify(rankDtoRepository, times(1)).findAll();
+  }
+
+  @Test
+  void should_pin_bought_event_to_its_rank() {
+    rsEventLeaderboard.assignRank(new RankDto(1, 1, 100, 2));
+
+    assertEquals(Arrays.asList("event2", "event1", "event3"), names(rsEventLeaderboard.getAll()));
+    assertEquals(Collections.singletonList("event1"), names(rsEventLeaderboard.getBetween(2, 2)));
+  }
+
+  @Test
+  void should_drop_previous_owner_when_rank_is_bought_again() {
+    rsEventLeaderboard.assignRank(new RankDto(1, 1, 100, 3));
+    rsEventLeaderboard.assignRank(new RankDto(1, 1, 500, 2));
+
+    assertEquals(Arrays.asList("event2", "event1"), names(rsEventLeaderboard.getAll()));
+  }
+
+  @Test
+  void should_get_the_event_list_shows_at_that_position() {
+    rsEventLeaderboard.assignRank(new RankDto(1, 2, 100, 2));
+    rsEventLeaderboard.assignRank(new RankDto(2, 5, 100, 1));
+
+    List<RsEvent> all = rsEventLeaderboard.getAll();
+    for (int position = 1; position <= all.size(); position++) {
+      assertEquals(all.get(position - 1), rsEventLeaderboard.get(position));
+    }
+    assertEquals(Arrays.asList("event3", "event2", "event1"), names(all));
+    assertThrows(RequestNotValidException.class, () -> rsEventLeaderboard.get(4));
+  }
+
+  @Test
+  void should_reorder_when_votes_and_events_are_added() {
+    rsEventLeaderboard.addVotes(2, 20);
+    rsEventLeaderboard.add(event(4, "event4", 7));
+
+    assertEquals(Arrays.asList("event2", "event1", "event4", "event3"), names(rsEventLeaderboard.getAll()));
+  }
+
+  @Test
+  void should_remove_events_of_deleted_user() {
+    rsEventLeaderboard.removeByUserId(userDto.getId());
+
+    assertEquals(0, rsEventLeaderboard.size());
+  }
+
+  @Test
+  void should_search_names_and_keywords_in_vote_order_as_votes_change() {
+    rsEventLeaderboard.add(event(4, "Pork price rises", 3));
+    rsEventLeaderboard.add(event(5, "Egg prices fall", 8));
+    rsEventLeaderboard.add(event(6, "Pork exports", 1));
+
+    assertEquals(Arrays.asList("Egg prices fall", "Pork price rises"), names(rsEventLeaderboard.search("pri", 10)));
+    assertEquals(Collections.singletonList("Pork price rises"), names(rsEventLeaderboard.search("pork pri", 10)));
+    assertEquals(Arrays.asList("event1", "Egg prices fall"), names(rsEventLeaderboard.search("KEYWORD", 2)));
+
+    rsEventLeaderboard.addVotes(6, 10);
+    rsEventLeaderboard.remove(5);
+
+    assertEquals(Arrays.asList("Pork exports", "Pork price rises"), names(rsEventLeaderboard.search("pork", 10)));
+    assertEquals(Collections.singletonList("Pork price rises"), names(rsEventLeaderboard.search("pri", 10)));
+  }
+
+  @Test
+  void should_keep_top_prefix_matches_when_leaders_lose_votes_or_go() {
+    for (int id = 10; id < 160; id++) {
+      rsEventLeaderboard.add(event(id, "item" + id, id));
+    }
+
+    assertEquals(Arrays.asList("item159", "item158", "item157"), names(rsEventLeaderboard.search("it", 3)));
+    assertEquals(100, rsEventLeaderboard.search("ite", 100).size());
+
+    rsEventLeaderboard.remove(159);
+    rsEventLeaderboard.addVotes(158, -200);
+    rsEventLeaderboard.addVotes(10, 1000);
+
+    assertEquals(Arrays.asList("item10", "item157", "item156"), names(rsEventLeaderboard.search("item", 3)));
+    List<RsEvent> all = rsEventLeaderboard.search("item", 100);
+    assertEquals(100, all.size());
+    assertEquals("item59", all.get(99).getEventName());
+    assertEquals(149, rsEventLeaderboard.search("item", 200).size());
+    assertEquals(Arrays.asList("item157", "item156", "item155", "item154", "item153", "item152", "item151",
+        "item150", "item15", "item158"), names(rsEventLeaderboard.search("item15", 10)));
+  }
+
+  @Test
+  void should_throw_exception_when_window_is_out_of_range() {
+    assertThrows(RequestNotValidException.class, () -> rsEventLeaderboard.getBetween(0, 2));
+    assertThrows(RequestNotValidException.class, () -> rsEventLeaderboard.getBetween(1, 4));
+  }
+
+  private RsEventDto event(int id, String eventName, int voteNum) {
+    return RsEventDto.builder().id(id).eventName(eventName).keyword("keyword").voteNum(voteNum).user(userDto).build();
+  }
+
+  private List<String> names(List<RsEvent> rsEvents) {
+    return rsEvents.stream().map(RsEvent::getEventName).collect(Collectors.toList());
+  }
+}
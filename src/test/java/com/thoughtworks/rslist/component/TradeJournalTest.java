@@ -0,0 +1,153 @@
+package com.thoughtworks.rslist.component;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class TradeJournalTest {
+  @TempDir Path dir;
+  @Mock JdbcTemplate jdbcTemplate;
+
+  @BeforeEach
+  void setUp() {
+    initMocks(this);
+  }
+
+  @Test
+  void should_roll_segments_and_replay_records_after_reopening() throws Exception {
+    TradeJournal tradeJournal = open();
+    for (int rank = 1; rank <= 5; rank++) {
+      tradeJournal.append(rank, rank * 100, rank + 10);
+    }
+
+    assertEquals(3, Files.list(dir).filter(file -> file.toString().endsWith(".journal")).count());
+    TradeJournal reopened = open();
+    List<TradeJournal.Entry> entries = new ArrayList<>();
+    reopened.replay(entries::add);
+    assertEquals(5, entries.size());
+    assertEquals(5, entries.get(4).getRankPos());
+    assertEquals(500, entries.get(4).getPrice());
+    assertEquals(15, entries.get(4).getRsEventId());
+
+    reopened.append(6, 600, 16);
+    List<Integer> ranks = new ArrayList<>();
+    reopened.replay(entry -> ranks.add(entry.getRankPos()));
+    assertEquals(6, ranks.size());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void should_load_new_records_once_and_drop_loaded_segments() throws Exception {
+    TradeJournal tradeJournal = open();
+    for (int rank = 1; rank <= 3; rank++) {
+      tradeJournal.append(rank, 100, rank);
+    }
+
+    tradeJournal.load();
+    ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+    verify(jdbcTemplate).batchUpdate(anyString(), rows.capture());
+    assertEquals(3, rows.getValue().size());
+    assertArrayEquals(new Object[] {3, 100, 3}, Arrays.copyOf(rows.getValue().get(2), 3));
+    assertArrayEquals(new Object[] {1L, 0}, Arrays.copyOfRange(rows.getValue().get(2), 4, 6));
+    assertFalse(Files.exists(dir.resolve(String.format("%020d.journal", 0))));
+
+    TradeJournal reopened = open();
+    reopened.load();
+    verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList());
+    List<Integer> ranks = new ArrayList<>();
+    reopened.replay(entry -> ranks.add(entry.getRankPos()));
+    assertEquals(Collections.singletonList(3), ranks);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void should_load_a_batch_again_under_the_same_journal_positions_after_a_crash() throws Exception {
+    TradeJournal tradeJournal = open();
+    tradeJournal.append(1, 100, 11);
+    tradeJournal.load();
+    // A crash after the insert but before the checkpoint moved.
+    Files.delete(dir.resolve("checkpoint"));
+
+    open().load();
+    ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+    verify(jdbcTemplate, times(2)).batchUpdate(startsWith("INSERT IGNORE"), rows.capture());
+    assertArrayEquals(rows.getAllValues().get(0).get(0), rows.getAllValues().get(1).get(0));
+    assertEquals(0L, rows.getValue().get(0)[4]);
+    assertEquals(0, rows.getValue().get(0)[5]);
+  }
+
+  @Test
+  void should_count_records_of_committed_transactions_only() throws Exception {
+    TradeJournal tradeJournal = open();
+    appendInTransaction(tradeJournal, 1, 100, 11).forEach(sync -> sync.afterCompletion(
+        TransactionSynchronization.STATUS_ROLLED_BACK));
+    List<TransactionSynchronization> pending = appendInTransaction(tradeJournal, 2, 200, 12);
+
+    List<Integer> ranks = new ArrayList<>();
+    tradeJournal.replay(entry -> ranks.add(entry.getRankPos()));
+    assertEquals(0, ranks.size());
+    tradeJournal.load();
+    verify(jdbcTemplate, times(0)).batchUpdate(anyString(), anyList());
+
+    pending.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    tradeJournal.replay(entry -> ranks.add(entry.getRankPos()));
+    assertEquals(Collections.singletonList(2), ranks);
+  }
+
+  @Test
+  void should_settle_records_left_pending_by_a_crash_against_rank_pos() throws Exception {
+    TradeJournal tradeJournal = open();
+    tradeJournal.append(1, 100, 11);
+    appendInTransaction(tradeJournal, 2, 200, 12);
+    appendInTransaction(tradeJournal, 3, 300, 13);
+    when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), eq(2), eq(200), eq(12))).thenReturn(1);
+    when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), eq(3), eq(300), eq(13))).thenReturn(0);
+
+    TradeJournal reopened = open();
+    List<Integer> ranks = new ArrayList<>();
+    reopened.replay(entry -> ranks.add(entry.getRankPos()));
+    assertEquals(Arrays.asList(1, 2), ranks);
+  }
+
+  // Appends inside a simulated transaction that has not completed yet.
+  private static List<TransactionSynchronization> appendInTransaction(TradeJournal tradeJournal, int rankPos,
+                                                                     int price, int rsEventId) {
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      tradeJournal.append(rankPos, price, rsEventId);
+      return TransactionSynchronizationManager.getSynchronizations();
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  private TradeJournal open() throws Exception {
+    TradeJournal tradeJournal = new TradeJournal(jdbcTemplate, true, dir.toString(), 2, 60_000, 1, 0);
+    tradeJournal.start();
+    return tradeJournal;
+  }
+}
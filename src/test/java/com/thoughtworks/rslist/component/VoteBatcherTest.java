@@ -0,0 +1,58 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class VoteBatcherTest {
+  VoteBatcher voteBatcher;
+
+  @Mock JdbcTemplate jdbcTemplate;
+  @Mock VoteRepository voteRepository;
+  @Mock PlatformTransactionManager transactionManager;
+  @Mock RsEventLeaderboard rsEventLeaderboard;
+  @Mock VoteBudgets voteBudgets;
+  @Mock ObjectProvider<ReadRouting> readRouting;
+
+  @BeforeEach
+  void setUp() {
+    initMocks(this);
+    voteBatcher = new VoteBatcher(jdbcTemplate, voteRepository, transactionManager, rsEventLeaderboard, voteBudgets,
+        readRouting, true, "sync", 10, 10, 100);
+    voteBatcher.start();
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    voteBatcher.stop();
+  }
+
+  @Test
+  void should_fail_votes_of_a_user_whose_guarded_debit_does_not_fit() {
+    when(jdbcTemplate.batchUpdate(startsWith("UPDATE user"), anyList())).thenReturn(new int[] {0});
+
+    assertThrows(CompletionException.class, () -> voteBatcher.submit(new Vote(1, 2, LocalDateTime.now(), 3), 2));
+
+    verify(voteBudgets).release(1, 3);
+    verify(voteBudgets, never()).commit(1, 3);
+    verify(voteRepository, never()).insertVotes(anyList());
+    verify(rsEventLeaderboard, never()).addVotes(2, 3);
+  }
+}
@@ -0,0 +1,106 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+class VoteBudgetsTest {
+  VoteBudgets voteBudgets;
+
+  @Mock UserRepository userRepository;
+
+  @BeforeEach
+  void setUp() {
+    initMocks(this);
+    voteBudgets = new VoteBudgets(userRepository);
+    when(userRepository.findById(5000)).thenReturn(Optional.of(UserDto.builder().id(5000).voteNum(10).build()));
+    when(userRepository.findMaxId()).thenReturn(5000);
+  }
+
+  @Test
+  void should_load_budget_once_and_reserve_until_it_is_spent() {
+    assertTrue(voteBudgets.reserve(5000, 6));
+    assertFalse(voteBudgets.reserve(5000, 5));
+    assertTrue(voteBudgets.reserve(5000, 4));
+    assertFalse(voteBudgets.reserve(5000, 1));
+
+    verify(userRepository, times(1)).findById(5000);
+  }
+
+  @Test
+  void should_make_released_votes_available_again_but_not_committed_ones() {
+    voteBudgets.reserve(5000, 6);
+    voteBudgets.reserve(5000, 4);
+
+    voteBudgets.commit(5000, 6);
+    voteBudgets.release(5000, 4);
+
+    assertFalse(voteBudgets.reserve(5000, 5));
+    assertTrue(voteBudgets.reserve(5000, 4));
+  }
+
+  @Test
+  void should_reject_unknown_user_and_reload_after_evict() {
+    assertFalse(voteBudgets.reserve(7, 1));
+
+    voteBudgets.reserve(5000, 10);
+    voteBudgets.commit(5000, 10);
+    voteBudgets.evict(5000);
+
+    assertTrue(voteBudgets.reserve(5000, 10));
+    verify(userRepository, times(2)).findById(5000);
+  }
+
+  @Test
+  void should_reject_ids_beyond_the_highest_user_without_reading_rows() {
+    assertFalse(voteBudgets.reserve(5001, 1));
+    assertFalse(voteBudgets.reserve(1 << 30, 1));
+    voteBudgets.evict(1 << 20);
+    voteBudgets.refund(1 << 20, 1);
+
+    verify(userRepository, never()).findById(5001);
+    verify(userRepository, never()).findById(1 << 30);
+    assertTrue(voteBudgets.idle().getUserIds().isEmpty());
+  }
+
+  @Test
+  void should_keep_reserved_budget_on_evict_and_add_refunds() {
+    voteBudgets.reserve(5000, 4);
+    voteBudgets.evict(5000);
+    voteBudgets.refund(5000, 3);
+
+    assertTrue(voteBudgets.reserve(5000, 9));
+    assertFalse(voteBudgets.reserve(5000, 1));
+    verify(userRepository, times(1)).findById(5000);
+  }
+
+  @Test
+  void should_reconcile_only_idle_budgets_that_did_not_change_meanwhile() {
+    when(userRepository.findById(1)).thenReturn(Optional.of(UserDto.builder().id(1).voteNum(10).build()));
+    voteBudgets.reserve(5000, 1);
+    voteBudgets.commit(5000, 1);
+    voteBudgets.reserve(1, 1);
+    voteBudgets.commit(1, 1);
+
+    VoteBudgets.Idle idle = voteBudgets.idle();
+    voteBudgets.reserve(1, 1);
+
+    assertEquals(1, voteBudgets.reconcile(idle, userId -> 3));
+    assertTrue(voteBudgets.reserve(5000, 3));
+    assertFalse(voteBudgets.reserve(5000, 1));
+    assertTrue(voteBudgets.reserve(1, 8));
+  }
+}
@@ -0,0 +1,116 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.domain.Vote;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VoteOutboxTest {
+  List<DataSource> shardDataSources;
+  JdbcTemplate jdbcTemplate;
+  TransactionTemplate transactionTemplate;
+  VoteShards voteShards;
+  VoteOutbox voteOutbox;
+  LocalDateTime start;
+
+  @BeforeEach
+  void setUp() {
+    shardDataSources = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      DataSource dataSource = new DriverManagerDataSource(
+          "jdbc:h2:mem:outbox_shard_" + i + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+      new JdbcTemplate(dataSource).execute("DROP TABLE IF EXISTS vote");
+      shardDataSources.add(dataSource);
+    }
+    DataSource main = new DriverManagerDataSource("jdbc:h2:mem:outbox_main;DB_CLOSE_DELAY=-1", "sa", "");
+    jdbcTemplate = new JdbcTemplate(main);
+    jdbcTemplate.execute("DROP TABLE IF EXISTS vote_outbox");
+    jdbcTemplate.execute("CREATE TABLE vote_outbox (id BIGINT NOT NULL AUTO_INCREMENT, local_date_time TIMESTAMP, "
+        + "num INTEGER NOT NULL, user_id INTEGER NOT NULL, rs_event_id INTEGER NOT NULL, PRIMARY KEY (id))");
+    DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(main);
+    transactionTemplate = new TransactionTemplate(transactionManager);
+    voteShards = new VoteShards(shardDataSources);
+    voteOutbox = new VoteOutbox(jdbcTemplate, voteShards, transactionManager, 60_000);
+    start = LocalDateTime.of(2020, 5, 1, 12, 0);
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    voteOutbox.stop();
+    voteShards.stop();
+  }
+
+  @Test
+  void should_copy_votes_to_their_shards_only_once_their_transaction_commits() {
+    transactionTemplate.executeWithoutResult(status -> {
+      voteOutbox.add(Arrays.asList(new Vote(1, 1, start, 1), new Vote(1, 2, start, 2)));
+      status.setRollbackOnly();
+    });
+
+    assertEquals(0, shardRows());
+    assertEquals(0, outboxRows());
+
+    transactionTemplate.executeWithoutResult(
+        status -> voteOutbox.add(Arrays.asList(new Vote(1, 1, start, 1), new Vote(1, 2, start, 2))));
+
+    assertEquals(2, shardRows());
+    assertEquals(0, outboxRows());
+    assertEquals(2, voteShards.findByUser(1, 0, 10).size());
+  }
+
+  @Test
+  void should_keep_votes_queued_while_paused_and_copy_them_once() {
+    List<Vote> votes = Arrays.asList(new Vote(1, 1, start, 1), new Vote(1, 2, start, 2));
+    voteOutbox.paused(() -> {
+      transactionTemplate.executeWithoutResult(status -> voteOutbox.add(votes));
+      assertEquals(0, shardRows());
+      assertEquals(2, outboxRows());
+      // A copy that reached the shards but whose delete from the outbox was lost.
+      voteShards.insert(Arrays.asList(1L, 2L), votes);
+      return null;
+    });
+
+    assertEquals(2, shardRows());
+    assertEquals(0, outboxRows());
+  }
+
+  @Test
+  void should_delete_shard_rows_only_once_the_delete_commits() {
+    voteOutbox.add(Arrays.asList(new Vote(1, 1, start, 1), new Vote(2, 1, start, 2)));
+
+    transactionTemplate.executeWithoutResult(status -> {
+      voteOutbox.deleteByEvents(Collections.singletonList(1));
+      status.setRollbackOnly();
+    });
+    assertEquals(2, shardRows());
+
+    transactionTemplate.executeWithoutResult(
+        status -> voteOutbox.deleteByUserOnEvents(1, Collections.singletonList(1)));
+    assertEquals(1, shardRows());
+  }
+
+  private int shardRows() {
+    int rows = 0;
+    for (DataSource dataSource : shardDataSources) {
+      rows += new JdbcTemplate(dataSource).queryForObject("SELECT COUNT(*) FROM vote", Integer.class);
+    }
+    return rows;
+  }
+
+  private int outboxRows() {
+    return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM vote_outbox", Integer.class);
+  }
+}
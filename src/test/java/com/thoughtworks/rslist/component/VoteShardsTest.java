@@ -0,0 +1,125 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.domain.VoteTotal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VoteShardsTest {
+  List<DataSource> dataSources;
+  VoteShards voteShards;
+  LocalDateTime start;
+
+  @BeforeEach
+  void setUp() {
+    dataSources = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      DataSource dataSource = new DriverManagerDataSource(
+          "jdbc:h2:mem:vote_shard_" + i + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+      new JdbcTemplate(dataSource).execute("DROP TABLE IF EXISTS vote");
+      dataSources.add(dataSource);
+    }
+    voteShards = new VoteShards(dataSources.subList(0, 2));
+    start = LocalDateTime.of(2020, 5, 1, 12, 0);
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    voteShards.stop();
+  }
+
+  @Test
+  void should_keep_votes_of_an_event_on_one_shard_and_gather_user_votes_from_all() {
+    List<Vote> votes = new ArrayList<>();
+    for (int rsEventId = 1; rsEventId <= 20; rsEventId++) {
+      votes.add(new Vote(1, rsEventId, start.plusMinutes(rsEventId), 1));
+      votes.add(new Vote(2, rsEventId, start.plusMinutes(rsEventId), 2));
+    }
+    voteShards.insert(outboxIdsOf(votes), votes);
+
+    for (int rsEventId = 1; rsEventId <= 20; rsEventId++) {
+      assertEquals(2, rowsOf(voteShards.shardOf(rsEventId), rsEventId));
+    }
+    List<Vote> history = voteShards.findByUserAndEvent(2, 3, 0, 5);
+    assertEquals(1, history.size());
+    assertEquals(2, history.get(0).getVoteNum());
+    List<Vote> secondPage = voteShards.findByUser(1, 5, 5);
+    assertEquals(Arrays.asList(6, 7, 8, 9, 10), eventsOf(secondPage));
+    assertEquals(40, voteShards.sumByUser().stream()
+        .filter(total -> total.getId() == 2).mapToLong(VoteTotal::getVotes).sum());
+  }
+
+  @Test
+  void should_page_user_votes_cast_at_the_same_time_in_event_order() {
+    List<Vote> votes = new ArrayList<>();
+    for (int rsEventId = 20; rsEventId >= 1; rsEventId--) {
+      votes.add(new Vote(1, rsEventId, start, 1));
+    }
+    voteShards.insert(outboxIdsOf(votes), votes);
+
+    assertEquals(Arrays.asList(1, 2, 3, 4, 5), eventsOf(voteShards.findByUser(1, 0, 5)));
+    assertEquals(Arrays.asList(6, 7, 8, 9, 10), eventsOf(voteShards.findByUser(1, 5, 5)));
+  }
+
+  @Test
+  void should_skip_votes_already_written_under_their_outbox_id() {
+    List<Vote> votes = Arrays.asList(new Vote(1, 1, start, 1), new Vote(1, 2, start, 2));
+    voteShards.insert(outboxIdsOf(votes), votes);
+    voteShards.insert(outboxIdsOf(votes), votes);
+
+    assertEquals(1, rowsOf(voteShards.shardOf(1), 1));
+    assertEquals(1, rowsOf(voteShards.shardOf(2), 2));
+  }
+
+  @Test
+  void should_move_votes_to_their_new_shard_when_resharding() {
+    List<Vote> votes = new ArrayList<>();
+    for (int rsEventId = 1; rsEventId <= 30; rsEventId++) {
+      votes.add(new Vote(1, rsEventId, start.plusMinutes(rsEventId), 1));
+    }
+    voteShards.insert(outboxIdsOf(votes), votes);
+    voteShards.stop();
+
+    voteShards = new VoteShards(dataSources);
+    int moved = voteShards.reshard();
+
+    for (int rsEventId = 1; rsEventId <= 30; rsEventId++) {
+      assertEquals(1, rowsOf(voteShards.shardOf(rsEventId), rsEventId));
+      assertEquals(1, voteShards.findByUserAndEvent(1, rsEventId, 0, 5).size());
+    }
+    assertEquals(0, voteShards.reshard());
+    assertEquals(30, voteShards.findByUser(1, 0, 100).size());
+    assertTrue(moved > 0);
+  }
+
+  private int rowsOf(int shard, int rsEventId) {
+    return new JdbcTemplate(dataSources.get(shard))
+        .queryForObject("SELECT COUNT(*) FROM vote WHERE rs_event_id = ?", Integer.class, rsEventId);
+  }
+
+  private static List<Long> outboxIdsOf(List<Vote> votes) {
+    List<Long> outboxIds = new ArrayList<>();
+    for (long outboxId = 1; outboxId <= votes.size(); outboxId++) {
+      outboxIds.add(outboxId);
+    }
+    return outboxIds;
+  }
+
+  private static List<Integer> eventsOf(List<Vote> votes) {
+    List<Integer> rsEventIds = new ArrayList<>();
+    votes.forEach(vote -> rsEventIds.add(vote.getRsEventId()));
+    return rsEventIds;
+  }
+}
@@ -0,0 +1,65 @@
+package com.thoughtworks.rslist.component;
+
+import com.thoughtworks.rslist.exception.WriteRejectedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WriteExecutorTest {
+  WriteExecutor writeExecutor;
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    writeExecutor.stop();
+  }
+
+  @Test
+  void should_run_inline_when_async_is_disabled() {
+    writeExecutor = new WriteExecutor(false, 1, 1);
+
+    assertEquals(Thread.currentThread().getName(),
+        writeExecutor.submit(() -> Thread.currentThread().getName()).join());
+  }
+
+  @Test
+  void should_reject_at_once_when_threads_and_queue_are_full() throws Exception {
+    writeExecutor = new WriteExecutor(true, 1, 1);
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<String> running = writeExecutor.submit(() -> {
+      await(release);
+      return Thread.currentThread().getName();
+    });
+    CompletableFuture<String> queued = writeExecutor.submit(() -> "queued");
+
+    assertThrows(WriteRejectedException.class, () -> writeExecutor.submit(() -> "rejected"));
+    assertEquals(1, writeExecutor.getRejectedCount());
+
+    release.countDown();
+    assertNotEquals(Thread.currentThread().getName(), running.get());
+    assertEquals("queued", queued.get());
+  }
+
+  @Test
+  void should_leave_connections_for_reads_and_background_threads() {
+    writeExecutor = new WriteExecutor(true, 0, 1, 10, 60000, false, false, "");
+    assertEquals(6, writeExecutor.getThreads());
+    writeExecutor = new WriteExecutor(true, 3, 1, 10, 60000, false, false, "");
+    assertEquals(3, writeExecutor.getThreads());
+    writeExecutor = new WriteExecutor(true, 8, 1, 10, 0, true, true, "jdbc:h2:mem:shard_0");
+    assertEquals(2, writeExecutor.getThreads());
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package com.thoughtworks.rslist.service;
+
+import com.thoughtworks.rslist.domain.Vote;
+import com.thoughtworks.rslist.dto.RsEventDto;
+import com.thoughtworks.rslist.dto.UserDto;
+import com.thoughtworks.rslist.repository.RsEventRepository;
+import com.thoughtworks.rslist.repository.UserRepository;
+import com.thoughtworks.rslist.repository.VoteRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class RsServiceConcurrencyTest {
+  private static final int THREADS = 16;
+
+  @Autowired RsService rsService;
+  @Autowired UserRepository userRepository;
+  @Autowired RsEventRepository rsEventRepository;
+  @Autowired VoteRepository voteRepository;
+
+  @BeforeEach
+  void setUp() {
+    voteRepository.deleteAll();
+    rsEventRepository.deleteAll();
+    userRepository.deleteAll();
+  }
+
+  @AfterEach
+  void tearDown() {
+    setUp();
+  }
+
+  @Test
+  void should_keep_vote_totals_exact_under_concurrent_votes() throws Exception {
+    List<UserDto> users = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      users.add(userRepository.save(user("user" + i, 200)));
+    }
+    List<RsEventDto> rsEvents = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      rsEvents.add(rsEventRepository.save(
+          RsEventDto.builder().eventName("event" + i).keyword("keyword").voteNum(0).user(users.get(0)).build()));
+    }
+    List<Callable<Boolean>> votes = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      votes.add(voteTask(users.get(i % users.size()).getId(), rsEvents.get(i % rsEvents.size()).getId()));
+    }
+
+    assertEquals(2000, run(votes));
+
+    for (RsEventDto rsEvent : rsEvents) {
+      assertEquals(400, rsEventRepository.findById(rsEvent.getId()).get().getVoteNum());
+    }
+    for (UserDto user : users) {
+      assertEquals(0, userRepository.findById(user.getId()).get().getVoteNum());
+    }
+    assertEquals(2000, voteRepository.count());
+  }
+
+  @Test
+  void should_not_let_user_spend_more_than_budget_under_concurrent_votes() throws Exception {
+    UserDto user = userRepository.save(user("user", 100));
+    RsEventDto rsEvent = rsEventRepository.save(
+        RsEventDto.builder().eventName("event").keyword("keyword").voteNum(0).user(user).build());
+    List<Callable<Boolean>> votes = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      votes.add(voteTask(user.getId(), rsEvent.getId()));
+    }
+
+    assertEquals(100, run(votes));
+
+    assertEquals(0, userRepository.findById(user.getId()).get().getVoteNum());
+    assertEquals(100, rsEventRepository.findById(rsEvent.getId()).get().getVoteNum());
+    assertEquals(100, voteRepository.count());
+  }
+
+  private UserDto user(String userName, int voteNum) {
+    return UserDto.builder().userName(userName).gender("female").age(19).email("a@b.com")
+        .phone("18888888888").voteNum(voteNum).build();
+  }
+
+  private Callable<Boolean> voteTask(int userId, int rsEventId) {
+    return () -> {
+      try {
+        rsService.vote(Vote.builder().userId(userId).voteNum(1).time(LocalDateTime.now()).build(), rsEventId);
+        return true;
+      } catch (RuntimeException e) {
+        return false;
+      }
+    };
+  }
+
+  private int run(List<Callable<Boolean>> tasks) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      int succeeded = 0;
+      for (Future<Boolean> future : executor.invokeAll(tasks)) {
+        if (future.get()) {
+          succeeded++;
+        }
+      }
+      return succeeded;
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -1,22 +1,27 @@
 package com.thoughtworks.rslist.service;
 
+import com.thoughtworks.rslist.component.RankAuction;
+import com.thoughtworks.rslist.component.ReadRouting;
+import com.thoughtworks.rslist.component.RsEventLeaderboard;
+import com.thoughtworks.rslist.component.TradeJournal;
+import com.thoughtworks.rslist.component.VoteBatcher;
+import com.thoughtworks.rslist.component.VoteBudgets;
 import com.thoughtworks.rslist.domain.Trade;
 import com.thoughtworks.rslist.domain.Vote;
 import com.thoughtworks.rslist.dto.RankDto;
-import com.thoughtworks.rslist.dto.RsEventDto;
-import com.thoughtworks.rslist.dto.UserDto;
-import com.thoughtworks.rslist.dto.VoteDto;
-import com.thoughtworks.rslist.exception.FailedToBuyRankException;
 import com.thoughtworks.rslist.repository.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -28,13 +33,23 @@ class RsServiceTest {
   @Mock VoteRepository voteRepository;
   @Mock RankDtoRepository rankDtoRepository;
   @Mock RankRecordRepository rankRecordRepository;
+  @Mock RsEventLeaderboard rsEventLeaderboard;
+  @Mock VoteBatcher voteBatcher;
+  @Mock VoteBudgets voteBudgets;
+  @Mock RankAuction rankAuction;
+  @Mock TradeJournal tradeJournal;
+  @Mock ObjectProvider<ReadRouting> readRouting;
+  @Mock PlatformTransactionManager transactionManager;
   LocalDateTime localDateTime;
   Vote vote;
 
   @BeforeEach
   void setUp() {
     initMocks(this);
-    rsService = new RsService(rsEventRepository, userRepository, voteRepository, rankDtoRepository, rankRecordRepository);
+    rsService = new RsService(rsEventRepository, userRepository, voteRepository, rankDtoRepository, rankRecordRepository,
+            rsEventLeaderboard, voteBatcher, voteBudgets, rankAuction, tradeJournal, readRouting,
+            transactionManager);
+    when(voteBudgets.reserve(anyInt(), anyInt())).thenReturn(true);
     localDateTime = LocalDateTime.now();
     vote = Vote.builder().voteNum(2).rsEventId(1).time(localDateTime).userId(1).build();
   }
@@ -42,41 +57,52 @@ class RsServiceTest {
   @Test
   void shouldVoteSuccess() {
     // given
+    when(userRepository.spendVotes(1, 2)).thenReturn(1);
+    when(rsEventRepository.addVotes(1, 2)).thenReturn(1);
+    // when
+    rsService.vote(vote, 1);
+    // then
+    verify(userRepository).spendVotes(1, 2);
+    verify(rsEventRepository).addVotes(1, 2);
+    verify(voteRepository).insertVote(localDateTime, 2, 1, 1);
+    verify(rsEventLeaderboard).addVotes(1, 2);
+    verify(voteBudgets).commit(1, 2);
+  }
+
+  @Test
+  void should_reject_vote_without_touching_database_when_resident_budget_is_not_enough() {
+    // given
+    when(voteBudgets.reserve(1, 2)).thenReturn(false);
+    // when & then
+    assertThrows(RuntimeException.class, () -> rsService.vote(vote, 1));
+    verifyNoInteractions(userRepository, rsEventRepository, voteRepository, transactionManager);
+  }
+
+  @Test
+  void should_not_count_vote_when_user_budget_is_not_enough() {
+    // given
+    when(userRepository.spendVotes(1, 2)).thenReturn(0);
+    // when & then
+    assertThrows(RuntimeException.class, () -> rsService.vote(vote, 1));
+    verify(rsEventRepository, never()).addVotes(anyInt(), anyInt());
+    verify(voteRepository, never()).insertVote(any(), anyInt(), anyInt(), anyInt());
+    verify(transactionManager).rollback(any());
+    verify(voteBudgets).release(1, 2);
+  }
 
-    UserDto userDto =
-        UserDto.builder()
-            .voteNum(5)
-            .phone("18888888888")
-            .gender("female")
-            .email("a@b.com")
-            .age(19)
-            .userName("xiaoli")
-            .id(2)
-            .build();
-    RsEventDto rsEventDto =
-        RsEventDto.builder()
-            .eventName("event name")
-            .id(1)
-            .keyword("keyword")
-            .voteNum(2)
-            .user(userDto)
-            .build();
-
-    when(rsEventRepository.findById(anyInt())).thenReturn(Optional.of(rsEventDto));
-    when(userRepository.findById(anyInt())).thenReturn(Optional.of(userDto));
+  @Test
+  void should_hand_vote_to_batcher_instead_of_saving_when_batching_is_enabled() {
+    // given
+    when(rsEventRepository.existsById(anyInt())).thenReturn(true);
+    when(voteBatcher.isEnabled()).thenReturn(true);
     // when
     rsService.vote(vote, 1);
     // then
-    verify(voteRepository)
-        .save(
-            VoteDto.builder()
-                .num(2)
-                .localDateTime(localDateTime)
-                .user(userDto)
-                .rsEvent(rsEventDto)
-                .build());
-    verify(userRepository).save(userDto);
-    verify(rsEventRepository).save(rsEventDto);
+    verify(voteBatcher).submit(vote, 1);
+    verify(userRepository, never()).findById(anyInt());
+    verify(userRepository, never()).spendVotes(anyInt(), anyInt());
+    verify(rsEventRepository, never()).addVotes(anyInt(), anyInt());
+    verify(voteRepository, never()).insertVote(any(), anyInt(), anyInt(), anyInt());
   }
 
   @Test
@@ -92,50 +118,57 @@ class RsServiceTest {
         });
   }
 
+  @Test
+  void should_hand_trade_to_rank_auction() {
+    // when
+    rsService.buy(new Trade(50, 1), 2);
+
+    // then
+    verify(rankAuction).bid(eq(1), eq(50), eq(2), any());
+    verify(rankDtoRepository, never()).save(any());
+  }
+
   @Test
   void should_save_rankDto_and_rankRecordDto_into_repository_directly_when_rank_record_was_not_found() {
     // given
     when(rankDtoRepository.findRankDtoByRankPos(anyInt())).thenReturn(Optional.empty());
-    Trade trade = new Trade(100, 1);
-    int eventId = 1;
 
     // when
-    rsService.buy(trade, eventId);
+    rsService.saveTrade(new RankAuction.Bid(1, 100, 1));
 
     // then
+    verify(rsEventRepository, never()).deleteById(anyInt());
     verify(rankDtoRepository, times(1)).save(any());
     verify(rankRecordRepository, times(1)).save(any());
+    verify(rsEventLeaderboard).assignRank(any());
   }
 
   @Test
   void should_delete_origin_event_when_rank_record_was_found_and_amount_is_enough() {
     // given
-    Trade trade = new Trade(200, 1);
-    int eventId = 2;
     RankDto rankDto = new RankDto(1, 1, 100, 1);
     when(rankDtoRepository.findRankDtoByRankPos(anyInt())).thenReturn(Optional.of(rankDto));
 
     // when
-    rsService.buy(trade, eventId);
+    rsService.saveTrade(new RankAuction.Bid(1, 200, 2));
 
     // then
     verify(rsEventRepository, times(1)).deleteById(1);
-    verify(rankDtoRepository, times(1)).deleteById(1);
-    verify(rankDtoRepository, times(1)).save(any());
+    verify(rankDtoRepository, times(1)).save(new RankDto(1, 1, 200, 2));
     verify(rankRecordRepository, times(1)).save(any());
   }
 
   @Test
-  void should_throw_exception_when_amount_is_not_enough() {
+  void should_journal_trade_instead_of_saving_rank_record_when_journal_is_enabled() {
     // given
-    Trade trade = new Trade(50, 1);
-    int eventId = 2;
-    RankDto rankDto = new RankDto(1, 1, 100, 1);
-    when(rankDtoRepository.findRankDtoByRankPos(anyInt())).thenReturn(Optional.of(rankDto));
-
-    // when & then
-    assertThrows(FailedToBuyRankException.class, () -> rsService.buy(trade, eventId));
-  }
+    when(tradeJournal.isEnabled()).thenReturn(true);
+    when(rankDtoRepository.findRankDtoByRankPos(anyInt())).thenReturn(Optional.empty());
 
+    // when
+    rsService.saveTrade(new RankAuction.Bid(1, 100, 1));
 
+    // then
+    verify(tradeJournal).append(1, 100, 1);
+    verify(rankRecordRepository, never()).save(any());
+  }
 }